@@ -0,0 +1,52 @@
+package nn;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.Rng;
+
+/**
+ * Benchmarks of DNA crossover and mutation with the snake genome size.
+ * 
+ * @author Jakub Medek
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DNABenchmark {
+    @Param({"0.001", "0.01", "0.1"})
+    float mutationRate;
+
+    Rng rng;
+    DNA parentA, parentB;
+
+    @Setup
+    public void setup() {
+        rng = new Rng(1);
+        parentA = new DNA(1091, rng);
+        parentB = new DNA(1091, rng);
+    }
+
+    @Benchmark
+    public DNA crossover() {
+        return parentA.crossover(parentB, rng);
+    }
+
+    @Benchmark
+    public DNA mutate() {
+        parentA.mutate(mutationRate, rng);
+        return parentA;
+    }
+}
@@ -0,0 +1,58 @@
+package nn;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.Rng;
+
+/**
+ * Benchmarks of one forward pass of the snake network {48, 16, 16, 2} 
+ * with the different network implementations.
+ * 
+ * @author Jakub Medek
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeuralNetworkBenchmark {
+    static final int[] LAYERS_COUNT = {48, 16, 16, 2};
+
+    @Param({"EXACT", "TABLE", "RATIONAL"})
+    Activation activation;
+
+    NeuralNetwork neuralNetwork;
+    FlatNeuralNetwork flatNeuralNetwork;
+    float[] input;
+
+    @Setup
+    public void setup() {
+        Rng rng = new Rng(1);
+        DNA dna = new DNA(1091, rng);
+        neuralNetwork = new NeuralNetwork(LAYERS_COUNT, dna);
+        flatNeuralNetwork = new FlatNeuralNetwork(LAYERS_COUNT, dna, activation);
+        input = new float[48];
+        for (int i = 0; i < input.length; i++) input[i] = rng.nextFloat();
+    }
+
+    @Benchmark
+    public float[] neuralNetwork() {
+        return neuralNetwork.feedForward(input);
+    }
+
+    @Benchmark
+    public float[] flatNeuralNetwork() {
+        return flatNeuralNetwork.feedForward(input);
+    }
+}
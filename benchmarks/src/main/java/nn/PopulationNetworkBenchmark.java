@@ -0,0 +1,66 @@
+package nn;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.Rng;
+
+/**
+ * Benchmark of forward pass of a whole population - batched against 
+ * one network per snake.
+ * 
+ * @author Jakub Medek
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PopulationNetworkBenchmark {
+    static final int[] LAYERS_COUNT = {48, 16, 16, 2};
+
+    @Param({"10", "100", "1000", "10000"})
+    int population;
+
+    PopulationNetwork populationNetwork;
+    FlatNeuralNetwork[] networks;
+    float[][] inputs;
+
+    @Setup
+    public void setup() {
+        Rng rng = new Rng(1);
+        populationNetwork = new PopulationNetwork(LAYERS_COUNT, population);
+        networks = new FlatNeuralNetwork[population];
+        inputs = new float[population][48];
+        for (int i = 0; i < population; i++) {
+            DNA dna = new DNA(1091, rng);
+            for (int j = 0; j < inputs[i].length; j++) inputs[i][j] = rng.nextFloat();
+            populationNetwork.setWeights(i, dna);
+            populationNetwork.setInput(i, inputs[i]);
+            networks[i] = new FlatNeuralNetwork(LAYERS_COUNT, dna);
+        }
+    }
+
+    @Benchmark
+    public float batched() {
+        populationNetwork.feedForward(0, population);
+        return populationNetwork.getOutput(0, 0);
+    }
+
+    @Benchmark
+    public float separate() {
+        float sum = 0;
+        for (int i = 0; i < population; i++) sum += networks[i].feedForward(inputs[i])[0];
+        return sum;
+    }
+}
@@ -0,0 +1,58 @@
+package snakes;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.Rng;
+
+/**
+ * Benchmarks of vision and movement of one snake of given length.
+ * 
+ * @author Jakub Medek
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnakeBenchmark {
+    @Param({"3", "30", "300", "3000"})
+    int length;
+
+    @Param({"12", "1000"})
+    int foodCount;
+
+    World world;
+    Snake snake;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        world = new World(1, foodCount, 10, 20, 20, 400, 400, 1920, 1080, new Rng(1));
+        snake = world.snakes[0];
+        while (snake.body.size() < length) snake.eatFood();
+        for (int i = 0; i < length; i++) snake.move();
+    }
+
+    @Benchmark
+    public float[] rayCast() {
+        return snake.rayCast(world);
+    }
+
+    @Benchmark
+    public Snake move() {
+        snake.heading = -snake.heading;
+        snake.move();
+        return snake;
+    }
+}
@@ -0,0 +1,66 @@
+package snakes;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import util.Rng;
+
+/**
+ * Benchmarks of the whole headless tick and of food collisions for 
+ * different population sizes. The arena grows with the population, so 
+ * density of snakes and food stays the same.
+ * 
+ * @author Jakub Medek
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorldBenchmark {
+    @Param({"10", "100", "1000", "10000"})
+    int snakeCount;
+
+    @Param({"1", "0"})
+    int threads;
+
+    World world;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        float scale = (float)Math.sqrt(snakeCount/10f);
+        world = new World(snakeCount, (int)(12*scale*scale), 10, 20, 20, 400, 400, 1920*scale, 1080*scale, new Rng(1));
+        world.setParallelism((threads == 0) ? Runtime.getRuntime().availableProcessors() : threads);
+        world.setBatchedInference(true);
+        world.setViewRange(500);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        world.setParallelism(1);
+    }
+
+    @Benchmark
+    public long tick() {
+        world.step();
+        return world.getTick();
+    }
+
+    @Benchmark
+    public World checkSnakeFoodCollision() {
+        world.checkSnakeFoodCollision();
+        return world;
+    }
+}
@@ -0,0 +1,81 @@
+package evolution;
+
+import util.Rng;
+
+/**
+ * Fitness proportional selection using the alias method. Building the 
+ * table is O(N) and every pick is O(1), so it is best when fitness of the 
+ * whole population changes at once and then many picks follow (breeding 
+ * a whole generation). The table is rebuilt lazily on the first pick 
+ * after fitness changed.
+ * 
+ * @author Jakub Medek
+ */
+public class AliasSelection implements Selection {
+    final float[] fitness;
+    final float[] probability;
+    final int[] alias;
+    boolean dirty = true;
+
+    /**
+     * Constructor, which makes a selection with zero fitness everywhere.
+     * @param size Size of the population.
+     */
+    public AliasSelection(int size) {
+        fitness = new float[size];
+        probability = new float[size];
+        alias = new int[size];
+    }
+
+    @Override
+    public void set(int index, float value) {
+        fitness[index] = value;
+        dirty = true;
+    }
+
+    /**
+     * Builds the table (Vose's algorithm). If all fitness is zero, all 
+     * members are equally likely.
+     */
+    private void build() {
+        int n = fitness.length;
+        double sum = 0;
+        for (float value : fitness) sum += value;
+
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0, largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = (sum > 0) ? fitness[i]*n/sum : 1;
+            if (scaled[i] < 1) small[smallCount++] = i;
+            else large[largeCount++] = i;
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = (float)scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1) small[smallCount++] = more;
+            else large[largeCount++] = more;
+        }
+        while (largeCount > 0) probability[large[--largeCount]] = 1;
+        while (smallCount > 0) probability[small[--smallCount]] = 1;
+        dirty = false;
+    }
+
+    @Override
+    public int select(int excluded, Rng rng) {
+        if (dirty) build();
+        int pick;
+        int tries = 0;
+        do {
+            int i = rng.nextInt(probability.length);
+            pick = (rng.nextFloat() < probability[i]) ? i : alias[i];
+        } while (pick == excluded && ++tries < 10);
+        if (pick == excluded) pick = TournamentSelection.randomMember(fitness.length, excluded, rng);
+        return pick;
+    }
+}
@@ -0,0 +1,263 @@
+package evolution;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import nn.DNA;
+import util.Rng;
+
+/**
+ * Evaluator, which sends genomes to worker processes over sockets and 
+ * collects their fitness - the coordinator of distributed evaluation. 
+ * Workers (see Worker) can be started as child processes on this machine 
+ * or run on other machines and connect to the port. Every connection 
+ * takes one genome at a time from a shared queue, so faster workers get 
+ * more of them. If a worker disconnects, fails or does not answer in 
+ * time, its unfinished genome goes back to the queue. While no worker is 
+ * connected for a while, the coordinator evaluates the queued genomes 
+ * itself, so a generation is always finished. Selection and breeding 
+ * stay in this process.
+ * 
+ * Every genome is sent with the state of its random generator, so the 
+ * results are the same as with LocalEvaluator.
+ * 
+ * @author Jakub Medek
+ */
+public class DistributedEvaluator implements Evaluator {
+    final Episode episode;
+    final ServerSocket server;
+    final LinkedBlockingQueue<Task> tasks = new LinkedBlockingQueue<>();
+    final List<Thread> connections = new ArrayList<>();
+    final List<Process> children = new ArrayList<>();
+    volatile boolean running = true;
+    volatile int taskTimeout = 600000;
+    volatile long fallbackDelay = 30000;
+
+    /**
+     * Constructor, which starts listening for workers and starts the 
+     * local ones.
+     * @param episode Episode used to evaluate the genomes.
+     * @param bindAddress Address to listen on - loopback for local 
+     * workers only, any address (null) for workers on other machines.
+     * @param port Port to listen on, 0 for any free port.
+     * @param localWorkers Number of worker processes started on this 
+     * machine (each with one connection).
+     * @throws IOException If the port can't be opened or workers can't be 
+     * started.
+     */
+    public DistributedEvaluator(Episode episode, InetAddress bindAddress, int port, int localWorkers) throws IOException {
+        this.episode = episode;
+        server = new ServerSocket(port, 50, bindAddress);
+        Thread acceptor = new Thread(this::acceptWorkers, "coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (int i = 0; i < localWorkers; i++) {
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Worker.class.getName(),
+                    "--host", "127.0.0.1", "--port", String.valueOf(server.getLocalPort()), "--threads", "1");
+            builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            children.add(builder.start());
+        }
+    }
+
+    /**
+     * Sets how long a worker can evaluate one genome. A worker, which 
+     * does not answer in time, is disconnected and the genome is sent to 
+     * another one.
+     * @param millis Time limit in milliseconds (0 for none).
+     */
+    public void setTaskTimeout(int millis) {
+        taskTimeout = millis;
+    }
+
+    /**
+     * Sets how long the coordinator waits without any connected worker, 
+     * before it starts evaluating the genomes itself.
+     * @param millis Time in milliseconds.
+     */
+    public void setFallbackDelay(long millis) {
+        fallbackDelay = millis;
+    }
+
+    /**
+     * Returns the port the coordinator listens on.
+     * @return Port number.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Returns number of currently connected workers.
+     * @return Number of connections.
+     */
+    public synchronized int getWorkerCount() {
+        int alive = 0;
+        for (Thread connection : connections) if (connection.isAlive()) alive++;
+        return alive;
+    }
+
+    @Override
+    public float[] evaluate(DNA[] genomes, Rng[] rngs) {
+        float[] fitness = new float[genomes.length];
+        CountDownLatch done = new CountDownLatch(genomes.length);
+        for (int i = 0; i < genomes.length; i++) tasks.add(new Task(i, genomes[i].getGenes(), rngs[i].getState(), fitness, done));
+        try {
+            long lastWorker = System.nanoTime();
+            boolean warned = false;
+            while (!done.await(100, TimeUnit.MILLISECONDS)) {
+                if (getWorkerCount() > 0) {
+                    lastWorker = System.nanoTime();
+                    continue;
+                }
+                if (System.nanoTime() - lastWorker < TimeUnit.MILLISECONDS.toNanos(fallbackDelay)) continue;
+                if (!warned) {
+                    System.err.println("No workers on port " + getPort() + ", evaluating on the coordinator");
+                    warned = true;
+                }
+                Task task = tasks.poll();
+                if (task != null) evaluateLocally(task);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Evaluation was interrupted", e);
+        }
+        return fitness;
+    }
+
+    /**
+     * Evaluates one genome in this process.
+     * @param task Genome to evaluate.
+     */
+    private void evaluateLocally(Task task) {
+        task.fitness[task.index] = episode.evaluate(new DNA(task.genes), new Rng(task.rngState));
+        task.done.countDown();
+    }
+
+    /**
+     * Accepts connections of workers until the evaluator is shut down, 
+     * every connection gets its own thread.
+     */
+    private void acceptWorkers() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                Thread connection = new Thread(() -> serve(socket), "coordinator-" + socket.getRemoteSocketAddress());
+                connection.setDaemon(true);
+                synchronized (this) {
+                    connections.add(connection);
+                }
+                connection.start();
+            } catch (IOException e) {
+                if (running) System.err.println("Accepting worker failed: " + e);
+            }
+        }
+    }
+
+    /**
+     * Sends genomes to one worker and stores its results. A genome, which 
+     * was not finished because of any error (including a worker, which 
+     * stopped answering), goes back to the queue.
+     * @param socket Connection to the worker.
+     */
+    private void serve(Socket socket) {
+        Task task = null;
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(Worker.MAGIC);
+            episode.write(out);
+            out.flush();
+
+            while (running) {
+                task = tasks.poll(100, TimeUnit.MILLISECONDS);
+                if (task == null) continue;
+                out.writeByte(Worker.TASK);
+                out.writeInt(task.index);
+                out.writeLong(task.rngState);
+                out.writeInt(task.genes.length);
+                out.write(task.genes);
+                out.flush();
+                socket.setSoTimeout(taskTimeout);
+
+                int index = in.readInt();
+                float fitness = in.readFloat();
+                if (index != task.index) throw new IOException("Worker answered for genome " + index + " instead of " + task.index);
+                task.fitness[index] = fitness;
+                task.done.countDown();
+                task = null;
+            }
+            out.writeByte(Worker.STOP);
+            out.flush();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (running) System.err.println("Worker " + socket.getRemoteSocketAddress() + " failed: " + e);
+        } finally {
+            if (task != null) tasks.add(task);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        try {
+            server.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        for (Process child : children) {
+            try {
+                if (!child.waitFor(5, TimeUnit.SECONDS)) child.destroyForcibly();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                child.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * One genome to evaluate and where to put its result.
+     */
+    static class Task {
+        final int index;
+        final byte[] genes;
+        final long rngState;
+        final float[] fitness;
+        final CountDownLatch done;
+
+        /**
+         * Constructor.
+         * @param index Index of the genome in the generation.
+         * @param genes Genes of the genome.
+         * @param rngState State of the random generator of the episode.
+         * @param fitness Array of results of the generation.
+         * @param done Latch counted down when the result is stored.
+         */
+        Task(int index, byte[] genes, long rngState, float[] fitness, CountDownLatch done) {
+            this.index = index;
+            this.genes = genes;
+            this.rngState = rngState;
+            this.fitness = fitness;
+            this.done = done;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package evolution;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import nn.DNA;
+import snakes.World;
+import util.Rng;
+
+/**
+ * Class which evaluates one genome in its own isolated world - a single 
+ * snake with its own food, which lives until it dies or time runs out. 
+ * Every evaluation makes a new world, so many of them can run at the 
+ * same time on different threads.
+ * 
+ * @author Jakub Medek
+ */
+public class Episode {
+    final int maxFood;
+    final float foodSize;
+    final float bodySize;
+    final float padding;
+    final float snakeMaxHealth;
+    final float snakeHealthFromMeal;
+    final float width, height;
+    final int maxTicks;
+
+    /**
+     * Constructor - sets the enviroment of the episodes.
+     * @param maxFood Number of food in the arena
+     * @param foodSize Size of food - used for eating distance
+     * @param bodySize Size of snake parts - used for collisions
+     * @param padding Padding from the sides of the arena
+     * @param snakeMaxHealth Maximum health of the snake.
+     * @param snakeHealthFromMeal Extra health given by eating one meal.
+     * @param width Width of the arena.
+     * @param height Height of the arena.
+     * @param maxTicks Maximum length of an episode.
+     */
+    public Episode(int maxFood, float foodSize, float bodySize, float padding, float snakeMaxHealth, float snakeHealthFromMeal, float width, float height, int maxTicks) {
+        this.maxFood = maxFood;
+        this.foodSize = foodSize;
+        this.bodySize = bodySize;
+        this.padding = padding;
+        this.snakeMaxHealth = snakeMaxHealth;
+        this.snakeHealthFromMeal = snakeHealthFromMeal;
+        this.width = width;
+        this.height = height;
+        this.maxTicks = maxTicks;
+    }
+
+    /**
+     * Runs one episode with given genome.
+     * @param dna Genome to evaluate.
+     * @param rng Random generator of the episode.
+     * @return Fitness of the snake at the end of the episode.
+     */
+    public float evaluate(DNA dna, Rng rng) {
+        World world = new World(new DNA[]{dna}, maxFood, foodSize, bodySize, padding, snakeMaxHealth, snakeHealthFromMeal, width, height, rng);
+        world.setReplaceDeadSnakes(false);
+        for (int tick = 0; tick < maxTicks && world.getAliveCount() > 0; tick++) world.step();
+        return world.getSnake(0).getFitness();
+    }
+
+    /**
+     * Writes settings of the episode, e.g. to send them to a worker.
+     * @param out Stream to write into.
+     * @throws IOException If writing fails.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(maxFood);
+        out.writeFloat(foodSize);
+        out.writeFloat(bodySize);
+        out.writeFloat(padding);
+        out.writeFloat(snakeMaxHealth);
+        out.writeFloat(snakeHealthFromMeal);
+        out.writeFloat(width);
+        out.writeFloat(height);
+        out.writeInt(maxTicks);
+    }
+
+    /**
+     * Reads settings of an episode written by write.
+     * @param in Stream to read from.
+     * @return Episode with the read settings.
+     * @throws IOException If reading fails.
+     */
+    public static Episode read(DataInputStream in) throws IOException {
+        return new Episode(in.readInt(), in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(), in.readInt());
+    }
+}
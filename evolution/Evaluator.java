@@ -0,0 +1,26 @@
+package evolution;
+
+import nn.DNA;
+import util.Rng;
+
+/**
+ * Strategy for evaluating a whole generation - in threads of this JVM or 
+ * in other processes. Every genome is evaluated with its own random 
+ * generator, so the results do not depend on where it runs.
+ * 
+ * @author Jakub Medek
+ */
+public interface Evaluator {
+    /**
+     * Evaluates genomes and waits for all the results.
+     * @param genomes Genomes to evaluate.
+     * @param rngs Random generator for every genome.
+     * @return Fitness of every genome.
+     */
+    float[] evaluate(DNA[] genomes, Rng[] rngs);
+
+    /**
+     * Releases threads, connections and processes of the evaluator.
+     */
+    void shutdown();
+}
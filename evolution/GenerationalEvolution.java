@@ -0,0 +1,191 @@
+package evolution;
+
+import nn.DNA;
+import snakes.Snake;
+import util.Rng;
+
+/**
+ * Class which runs generational evolution. Every genome of a generation 
+ * is evaluated in its own episode, episodes run in parallel (on threads 
+ * or in worker processes, see Evaluator) and then the whole next 
+ * generation is bred at once - parents are picked by fitness (alias 
+ * method by default), the best genome is kept.
+ * 
+ * @author Jakub Medek
+ */
+public class GenerationalEvolution {
+    final Evaluator evaluator;
+    final Rng rng;
+    Selection selection;
+
+    DNA[] population;
+    float[] fitness;
+    int generation = 0;
+    int eliteCount = 1;
+
+    float bestFitness, meanFitness;
+    DNA bestGenome;
+
+    /**
+     * Constructor, which makes the first generation with random genomes.
+     * @param populationSize Number of genomes in a generation.
+     * @param episode Episode used to evaluate the genomes.
+     * @param threads Number of worker threads.
+     * @param rng Random generator used for everything, so the same seed 
+     * gives the same evolution.
+     */
+    public GenerationalEvolution(int populationSize, Episode episode, int threads, Rng rng) {
+        this(populationSize, new LocalEvaluator(episode, threads), rng);
+    }
+
+    /**
+     * Constructor, which makes the first generation with random genomes.
+     * @param populationSize Number of genomes in a generation.
+     * @param evaluator Evaluator of the genomes.
+     * @param rng Random generator used for everything, so the same seed 
+     * gives the same evolution.
+     */
+    public GenerationalEvolution(int populationSize, Evaluator evaluator, Rng rng) {
+        this.evaluator = evaluator;
+        this.rng = rng;
+        population = new DNA[populationSize];
+        for (int i = 0; i < population.length; i++) population[i] = new DNA(Snake.GENES_COUNT, rng);
+        fitness = new float[populationSize];
+        selection = new AliasSelection(populationSize);
+    }
+
+    /**
+     * Evaluates the current generation and breeds the next one.
+     */
+    public void nextGeneration() {
+        evaluate();
+        breed();
+        generation++;
+    }
+
+    /**
+     * Evaluates all genomes of the current generation in parallel. Every 
+     * episode gets its own random generator split from the main one in 
+     * order, so the results do not depend on scheduling.
+     */
+    public void evaluate() {
+        Rng[] episodeRngs = new Rng[population.length];
+        for (int i = 0; i < episodeRngs.length; i++) episodeRngs[i] = rng.split();
+        fitness = evaluator.evaluate(population, episodeRngs);
+
+        int best = 0;
+        double sum = 0;
+        for (int i = 0; i < fitness.length; i++) {
+            sum += fitness[i];
+            if (fitness[i] > fitness[best]) best = i;
+        }
+        bestFitness = fitness[best];
+        meanFitness = (float)(sum/fitness.length);
+        bestGenome = population[best];
+    }
+
+    /**
+     * Breeds the next generation from the evaluated one. The best genomes 
+     * are copied, the rest are children of two parents picked by fitness 
+     * (crossover and mutation as in the steady-state World).
+     */
+    public void breed() {
+        for (int i = 0; i < fitness.length; i++) selection.set(i, fitness[i]);
+        float mutationRate = 30f/Math.max(bestFitness, 300);
+
+        DNA[] next = new DNA[population.length];
+        int[] elite = bestIndices(Math.min(eliteCount, population.length));
+        for (int i = 0; i < elite.length; i++) next[i] = population[elite[i]];
+        for (int i = elite.length; i < next.length; i++) {
+            int parentA = selection.select(-1, rng);
+            int parentB = selection.select(parentA, rng);
+            DNA child = population[parentA].crossover(population[parentB], rng);
+            child.mutate(mutationRate, rng);
+            next[i] = child;
+        }
+        population = next;
+    }
+
+    /**
+     * Finds indices of genomes with the highest fitness.
+     * @param count Number of indices to find.
+     * @return Indices sorted from the best one.
+     */
+    private int[] bestIndices(int count) {
+        int[] best = new int[count];
+        boolean[] taken = new boolean[fitness.length];
+        for (int k = 0; k < count; k++) {
+            int bestIndex = -1;
+            for (int i = 0; i < fitness.length; i++) {
+                if (!taken[i] && (bestIndex == -1 || fitness[i] > fitness[bestIndex])) bestIndex = i;
+            }
+            taken[bestIndex] = true;
+            best[k] = bestIndex;
+        }
+        return best;
+    }
+
+    /**
+     * Sets how many best genomes are copied into the next generation 
+     * unchanged.
+     * @param eliteCount Number of copied genomes.
+     */
+    public void setEliteCount(int eliteCount) {
+        this.eliteCount = eliteCount;
+    }
+
+    /**
+     * Sets how parents are picked.
+     * @param selection Selection sized for the population.
+     */
+    public void setSelection(Selection selection) {
+        this.selection = selection;
+    }
+
+    /**
+     * Stops the evaluator (its threads or worker processes).
+     */
+    public void shutdown() {
+        evaluator.shutdown();
+    }
+
+    /**
+     * Returns number of generations bred so far.
+     * @return Number of generations.
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns the highest fitness of the last evaluated generation.
+     * @return Best fitness.
+     */
+    public float getBestFitness() {
+        return bestFitness;
+    }
+
+    /**
+     * Returns the mean fitness of the last evaluated generation.
+     * @return Mean fitness.
+     */
+    public float getMeanFitness() {
+        return meanFitness;
+    }
+
+    /**
+     * Returns the best genome of the last evaluated generation.
+     * @return Best genome.
+     */
+    public DNA getBestGenome() {
+        return bestGenome;
+    }
+
+    /**
+     * Returns genomes of the current generation.
+     * @return Array of genomes.
+     */
+    public DNA[] getPopulation() {
+        return population;
+    }
+}
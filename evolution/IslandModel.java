@@ -0,0 +1,187 @@
+package evolution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import metrics.TimeSeries;
+import nn.DNA;
+import snakes.World;
+import util.Rng;
+
+/**
+ * Class which runs several independent populations (islands), each in its 
+ * own World on its own thread, so throughput grows with number of cores. 
+ * Islands share nothing except migration - every few ticks an island 
+ * sends copies of its best genomes to the next island (in a ring) through 
+ * a lock-free queue and takes in genomes sent to it, which replace its 
+ * worst snakes. Rare migration keeps the islands diverse, while good 
+ * genomes still spread. At every migration an island also adds its best 
+ * fitness into its own time series, which can be shown by Graph.
+ * 
+ * Islands are independent of each other, but the moment migrants arrive 
+ * depends on thread scheduling, so runs with migration are not exactly 
+ * repeatable.
+ * 
+ * @author Jakub Medek
+ */
+public class IslandModel {
+    final Island[] islands;
+    final int migrationInterval;
+    final int migrantCount;
+
+    /**
+     * Number of values kept in the fitness history of every island.
+     */
+    static final int HISTORY_SIZE = 1000;
+
+    /**
+     * Constructor, which makes the islands. Every island gets its own 
+     * random generator split from the given one.
+     * @param islandCount Number of islands.
+     * @param snakeCount Number of snakes on every island.
+     * @param maxFood Maximum number of food on every island.
+     * @param foodSize Size of food - used for eating distance
+     * @param bodySize Size of snake parts - used for collisions
+     * @param padding Padding from the sides of the arena
+     * @param snakeMaxHealth Maximum health of a snake.
+     * @param snakeHealthFromMeal Extra health given by eating one meal.
+     * @param width Width of the arena of every island.
+     * @param height Height of the arena of every island.
+     * @param migrationInterval Number of ticks between migrations.
+     * @param migrantCount Number of best genomes sent in one migration.
+     * @param rng Random generator used to seed the islands.
+     */
+    public IslandModel(int islandCount, int snakeCount, int maxFood, float foodSize, float bodySize, float padding, float snakeMaxHealth, float snakeHealthFromMeal, float width, float height, int migrationInterval, int migrantCount, Rng rng) {
+        this.migrationInterval = migrationInterval;
+        this.migrantCount = migrantCount;
+        islands = new Island[islandCount];
+        for (int i = 0; i < islandCount; i++) {
+            World world = new World(snakeCount, maxFood, foodSize, bodySize, padding, snakeMaxHealth, snakeHealthFromMeal, width, height, rng.split());
+            world.setBatchedInference(true);
+            islands[i] = new Island(world, migrationInterval, migrantCount);
+        }
+    }
+
+    /**
+     * Starts a thread for every island.
+     */
+    public void start() {
+        for (int i = 0; i < islands.length; i++) {
+            Island island = islands[i];
+            Island neighbour = islands[(i + 1) % islands.length];
+            island.running = true;
+            island.thread = new Thread(() -> island.run(neighbour), "island-" + i);
+            island.thread.setDaemon(true);
+            island.thread.start();
+        }
+    }
+
+    /**
+     * Stops all the islands and waits for their threads to finish.
+     * @throws InterruptedException If waiting was interrupted.
+     */
+    public void stop() throws InterruptedException {
+        for (Island island : islands) island.running = false;
+        for (Island island : islands) if (island.thread != null) island.thread.join();
+    }
+
+    /**
+     * Returns number of islands.
+     * @return Number of islands.
+     */
+    public int getIslandCount() {
+        return islands.length;
+    }
+
+    /**
+     * Returns the highest fitness on an island (as of its last migration).
+     * @param island Index of the island.
+     * @return Best fitness.
+     */
+    public float getBestFitness(int island) {
+        return islands[island].bestFitness;
+    }
+
+    /**
+     * Returns number of ticks simulated on an island (as of its last 
+     * migration).
+     * @param island Index of the island.
+     * @return Number of ticks.
+     */
+    public long getTicks(int island) {
+        return islands[island].ticks;
+    }
+
+    /**
+     * Returns number of genomes, which arrived to an island so far.
+     * @param island Index of the island.
+     * @return Number of received migrants.
+     */
+    public long getImmigrants(int island) {
+        return islands[island].immigrants;
+    }
+
+    /**
+     * Returns history of the best fitness of every island (one value per 
+     * migration), filled by the islands themselves.
+     * @return Series of every island.
+     */
+    public TimeSeries[] getFitnessHistory() {
+        TimeSeries[] history = new TimeSeries[islands.length];
+        for (int i = 0; i < islands.length; i++) history[i] = islands[i].fitnessHistory;
+        return history;
+    }
+
+    /**
+     * One population with its own thread. The world is touched only by 
+     * the thread of the island, other threads only read the volatile 
+     * statistics and write into the queue.
+     */
+    static class Island {
+        final World world;
+        final int migrationInterval, migrantCount;
+        final ConcurrentLinkedQueue<DNA> inbox = new ConcurrentLinkedQueue<>();
+        final TimeSeries fitnessHistory = new TimeSeries(HISTORY_SIZE);
+        Thread thread;
+        volatile boolean running;
+        volatile float bestFitness;
+        volatile long ticks;
+        volatile long immigrants;
+
+        /**
+         * Constructor.
+         * @param world World of the island.
+         * @param migrationInterval Number of ticks between migrations.
+         * @param migrantCount Number of best genomes sent in one migration.
+         */
+        Island(World world, int migrationInterval, int migrantCount) {
+            this.world = world;
+            this.migrationInterval = migrationInterval;
+            this.migrantCount = migrantCount;
+        }
+
+        /**
+         * Main loop of the island - simulates, sends best genomes to the 
+         * neighbour and takes in the migrants.
+         * @param neighbour Island, which receives migrants from this one.
+         */
+        void run(Island neighbour) {
+            while (running) {
+                for (int tick = 0; tick < migrationInterval; tick++) world.step();
+                ticks = world.getTick();
+                bestFitness = world.getBestSnake().getFitness();
+                fitnessHistory.add(bestFitness);
+
+                if (neighbour != this) {
+                    for (DNA dna : world.getBestGenomes(migrantCount)) neighbour.inbox.offer(new DNA(dna.getGenes()));
+                }
+                // the whole batch goes in at once, so migrants do not replace each other
+                List<DNA> migrants = new ArrayList<>();
+                DNA migrant;
+                while ((migrant = inbox.poll()) != null) migrants.add(migrant);
+                world.insertGenomes(migrants);
+                immigrants += migrants.size();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package evolution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import nn.DNA;
+import util.Rng;
+
+/**
+ * Evaluator, which runs episodes in parallel on a pool of threads of 
+ * this JVM.
+ * 
+ * @author Jakub Medek
+ */
+public class LocalEvaluator implements Evaluator {
+    final Episode episode;
+    final ExecutorService workers;
+
+    /**
+     * Constructor, which starts the worker threads.
+     * @param episode Episode used to evaluate the genomes.
+     * @param threads Number of worker threads.
+     */
+    public LocalEvaluator(Episode episode, int threads) {
+        this.episode = episode;
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "episode-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public float[] evaluate(DNA[] genomes, Rng[] rngs) {
+        List<Callable<Float>> tasks = new ArrayList<>(genomes.length);
+        for (int i = 0; i < genomes.length; i++) {
+            DNA dna = genomes[i];
+            Rng rng = rngs[i];
+            tasks.add(() -> episode.evaluate(dna, rng));
+        }
+
+        float[] fitness = new float[genomes.length];
+        try {
+            List<Future<Float>> results = workers.invokeAll(tasks);
+            for (int i = 0; i < fitness.length; i++) fitness[i] = results.get(i).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Evaluation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Episode failed", e.getCause());
+        }
+        return fitness;
+    }
+
+    @Override
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,43 @@
+package evolution;
+
+import util.Rng;
+
+/**
+ * Linear rank selection - probability of picking a member depends only 
+ * on its rank, not on the value of its fitness. Instead of sorting, it 
+ * uses the fact that the better of two uniformly picked members has 
+ * probability (2*rank-1)/N^2, which is linear ranking with the highest 
+ * selection pressure 2. Lower pressure mixes in uniform picks. Picking 
+ * and updating fitness take O(1).
+ * 
+ * @author Jakub Medek
+ */
+public class RankSelection implements Selection {
+    final float[] fitness;
+    final float pressure;
+
+    /**
+     * Constructor, which makes a selection with zero fitness everywhere.
+     * @param size Size of the population.
+     * @param pressure Selection pressure from 1 (uniform) to 2 (the best 
+     * member is picked twice as often as an average one).
+     */
+    public RankSelection(int size, float pressure) {
+        fitness = new float[size];
+        this.pressure = Math.max(1, Math.min(2, pressure));
+    }
+
+    @Override
+    public void set(int index, float value) {
+        fitness[index] = value;
+    }
+
+    @Override
+    public int select(int excluded, Rng rng) {
+        int first = TournamentSelection.randomMember(fitness.length, excluded, rng);
+        if (rng.nextFloat() >= pressure - 1) return first;
+        int second = TournamentSelection.randomMember(fitness.length, excluded, rng);
+        if (fitness[second] > fitness[first] || (fitness[second] == fitness[first] && rng.nextBoolean())) return second;
+        return first;
+    }
+}
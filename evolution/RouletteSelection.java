@@ -0,0 +1,72 @@
+package evolution;
+
+import util.Rng;
+
+/**
+ * Fitness proportional (roulette wheel) selection. Fitness is kept in 
+ * a Fenwick tree of prefix sums, so both updating fitness and picking 
+ * take O(log N).
+ * 
+ * @author Jakub Medek
+ */
+public class RouletteSelection implements Selection {
+    final float[] fitness;
+    final double[] tree;
+    int highestBit;
+
+    /**
+     * Constructor, which makes a selection with zero fitness everywhere.
+     * @param size Size of the population.
+     */
+    public RouletteSelection(int size) {
+        fitness = new float[size];
+        tree = new double[size + 1];
+        highestBit = Integer.highestOneBit(Math.max(1, size));
+    }
+
+    @Override
+    public void set(int index, float value) {
+        double delta = (double)value - fitness[index];
+        fitness[index] = value;
+        for (int i = index + 1; i < tree.length; i += i & -i) tree[i] += delta;
+    }
+
+    /**
+     * Returns sum of fitness of members with index smaller than given one.
+     * @param index Index of the first member not counted.
+     * @return Sum of fitness.
+     */
+    double prefixSum(int index) {
+        double sum = 0;
+        for (int i = index; i > 0; i -= i & -i) sum += tree[i];
+        return sum;
+    }
+
+    @Override
+    public int select(int excluded, Rng rng) {
+        int size = fitness.length;
+        if (size == 1) return 0;
+        double total = prefixSum(size);
+        double excludedFitness = (excluded >= 0) ? fitness[excluded] : 0;
+        if (total - excludedFitness <= 0) return TournamentSelection.randomMember(size, excluded, rng);
+
+        double target = rng.nextDouble()*(total - excludedFitness);
+        if (excluded >= 0 && target >= prefixSum(excluded)) target += excludedFitness;
+
+        int position = 0;
+        for (int bit = highestBit; bit > 0; bit >>= 1) {
+            int next = position + bit;
+            if (next < tree.length && tree[next] <= target) {
+                position = next;
+                target -= tree[next];
+            }
+        }
+        int pick = Math.min(position, size - 1);
+        for (int step = 0; step < size; step++) {
+            if (fitness[pick] > 0 && pick != excluded) return pick;
+            pick = (pick + size - 1) % size;
+        }
+        // the total was only a rounding residue of many updates, nobody can be picked by fitness
+        return TournamentSelection.randomMember(size, excluded, rng);
+    }
+}
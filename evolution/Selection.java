@@ -0,0 +1,46 @@
+package evolution;
+
+import util.Rng;
+
+/**
+ * Strategy for picking parents based on their fitness. Implementations 
+ * keep fitness of every member of the population, which is updated 
+ * whenever it changes, so that picking does not need to look at the 
+ * whole population.
+ * 
+ * @author Jakub Medek
+ */
+public interface Selection {
+    /**
+     * Sets fitness of one member of the population.
+     * @param index Index of the member.
+     * @param fitness New fitness (non-negative).
+     */
+    void set(int index, float fitness);
+
+    /**
+     * Picks a random member of the population, better ones are more 
+     * likely to be picked.
+     * @param excluded Index of member, which can't be picked (-1 for none). 
+     * Used when picking two parents, so the same one isn't picked twice.
+     * @param rng Random generator to use.
+     * @return Index of the picked member.
+     */
+    int select(int excluded, Rng rng);
+
+    /**
+     * Makes a selection by name.
+     * @param name One of "roulette", "alias", "tournament" or "rank".
+     * @param size Size of the population.
+     * @return New selection.
+     */
+    static Selection byName(String name, int size) {
+        switch (name) {
+            case "roulette": return new RouletteSelection(size);
+            case "alias": return new AliasSelection(size);
+            case "tournament": return new TournamentSelection(size, 3);
+            case "rank": return new RankSelection(size, 2);
+            default: throw new IllegalArgumentException("Unknown selection: " + name);
+        }
+    }
+}
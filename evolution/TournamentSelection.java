@@ -0,0 +1,63 @@
+package evolution;
+
+import util.Rng;
+
+/**
+ * Tournament selection - picks a few random members and returns the best 
+ * of them. Picking takes O(tournament size), updating fitness O(1).
+ * 
+ * @author Jakub Medek
+ */
+public class TournamentSelection implements Selection {
+    final float[] fitness;
+    final int tournamentSize;
+
+    /**
+     * Constructor, which makes a selection with zero fitness everywhere.
+     * @param size Size of the population.
+     * @param tournamentSize Number of members competing in one pick. 
+     * Bigger tournaments prefer the best members more.
+     */
+    public TournamentSelection(int size, int tournamentSize) {
+        fitness = new float[size];
+        this.tournamentSize = tournamentSize;
+    }
+
+    @Override
+    public void set(int index, float value) {
+        fitness[index] = value;
+    }
+
+    @Override
+    public int select(int excluded, Rng rng) {
+        int best = -1;
+        for (int i = 0; i < tournamentSize; i++) {
+            int candidate = randomMember(excluded, rng);
+            if (best == -1 || fitness[candidate] > fitness[best]) best = candidate;
+        }
+        return best;
+    }
+
+    /**
+     * Picks a uniformly random member.
+     * @param size Size of the population.
+     * @param excluded Index of member, which can't be picked (-1 for none).
+     * @param rng Random generator to use.
+     * @return Index of the picked member.
+     */
+    static int randomMember(int size, int excluded, Rng rng) {
+        if (excluded < 0 || size == 1) return rng.nextInt(size);
+        int pick = rng.nextInt(size - 1);
+        return (pick >= excluded) ? pick + 1 : pick;
+    }
+
+    /**
+     * Picks a uniformly random member of this population.
+     * @param excluded Index of member, which can't be picked (-1 for none).
+     * @param rng Random generator to use.
+     * @return Index of the picked member.
+     */
+    private int randomMember(int excluded, Rng rng) {
+        return randomMember(fitness.length, excluded, rng);
+    }
+}
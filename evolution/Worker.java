@@ -0,0 +1,94 @@
+package evolution;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import nn.DNA;
+import util.Rng;
+
+/**
+ * Worker process of distributed evaluation. It connects to the 
+ * coordinator (DistributedEvaluator), receives settings of the episode 
+ * and then evaluates genomes one by one until the coordinator stops it. 
+ * One process can open several connections, one per thread. Arguments 
+ * are given as "--name value" pairs, e.g. 
+ * "--host 192.168.0.2 --port 7700 --threads 8".
+ * 
+ * Protocol (all numbers big-endian): the coordinator sends MAGIC and the 
+ * episode, then for every genome TASK, index, state of the random 
+ * generator, number of genes and the genes; the worker answers with the 
+ * index and fitness. STOP ends the connection.
+ * 
+ * @author Jakub Medek
+ */
+public class Worker {
+    static final int MAGIC = 0x534E414B;
+    static final byte STOP = 0, TASK = 1;
+
+    public static void main(String[] args) throws InterruptedException {
+        String host = "127.0.0.1";
+        int port = 7700;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i+1];
+            switch (args[i]) {
+                case "--host": host = value; break;
+                case "--port": port = Integer.parseInt(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    return;
+            }
+        }
+
+        String coordinatorHost = host;
+        int coordinatorPort = port;
+        Thread[] connections = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            connections[i] = new Thread(() -> {
+                try {
+                    serve(coordinatorHost, coordinatorPort);
+                } catch (IOException e) {
+                    System.err.println("Worker connection failed: " + e);
+                }
+            }, "worker-" + i);
+            connections[i].start();
+        }
+        for (Thread connection : connections) connection.join();
+    }
+
+    /**
+     * Evaluates genomes sent over one connection until the coordinator 
+     * sends STOP or closes the connection.
+     * @param host Address of the coordinator.
+     * @param port Port of the coordinator.
+     * @throws IOException If the connection fails.
+     */
+    static void serve(String host, int port) throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != MAGIC) throw new IOException("Not a coordinator");
+            Episode episode = Episode.read(in);
+
+            while (in.readByte() == TASK) {
+                int index = in.readInt();
+                long state = in.readLong();
+                byte[] genes = new byte[in.readInt()];
+                in.readFully(genes);
+                float fitness = episode.evaluate(new DNA(genes), new Rng(state));
+                out.writeInt(index);
+                out.writeFloat(fitness);
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // coordinator closed the connection
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package main;
+
+import evolution.DistributedEvaluator;
+import evolution.Episode;
+import evolution.Evaluator;
+import evolution.GenerationalEvolution;
+import evolution.LocalEvaluator;
+import evolution.Selection;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Paths;
+import nn.GenomeArchive;
+import snakes.Snake;
+import util.Rng;
+
+/**
+ * Runs generational evolution without any window. Every genome is 
+ * evaluated in its own episode and episodes run in parallel - on threads 
+ * of this process or, with "--workers" or "--port", in worker processes 
+ * (see evolution.Worker). Arguments are given as "--name value" pairs, 
+ * e.g. "--generations 100 --population 1000 --threads 8" or 
+ * "--population 1000 --workers 4 --listen 0.0.0.0 --port 7700". With 
+ * "--archive file" the best genome of every generation is archived.
+ * @author Jakub Medek
+ */
+public class GenerationalRunner {
+    public static void main(String[] args) throws IOException {
+        int generations = 100;
+        int populationSize = 1000;
+        int maxTicks = 5000;
+        int maxFood = 12;
+        float foodSize = 10;
+        float bodySize = 20;
+        float padding = 20;
+        float snakeMaxHealth = 400;
+        float snakeHealthFromMeal = 400;
+        float width = 1920;
+        float height = 1080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        String selection = null;
+        int localWorkers = 0;
+        int port = -1;
+        String listen = "127.0.0.1";
+        String archivePath = null;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i+1];
+            switch (args[i]) {
+                case "--generations": generations = Integer.parseInt(value); break;
+                case "--population": populationSize = Integer.parseInt(value); break;
+                case "--max-ticks": maxTicks = Integer.parseInt(value); break;
+                case "--food": maxFood = Integer.parseInt(value); break;
+                case "--width": width = Float.parseFloat(value); break;
+                case "--height": height = Float.parseFloat(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--selection": selection = value; break;
+                case "--workers": localWorkers = Integer.parseInt(value); break;
+                case "--port": port = Integer.parseInt(value); break;
+                case "--listen": listen = value; break;
+                case "--archive": archivePath = value; break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    return;
+            }
+        }
+
+        System.out.println("Seed " + seed);
+        Episode episode = new Episode(maxFood, foodSize, bodySize, padding, snakeMaxHealth, snakeHealthFromMeal, width, height, maxTicks);
+        Evaluator evaluator;
+        if (localWorkers > 0 || port >= 0) {
+            DistributedEvaluator distributed = new DistributedEvaluator(episode, InetAddress.getByName(listen), Math.max(port, 0), localWorkers);
+            System.out.println("Coordinator listening on " + listen + ":" + distributed.getPort());
+            evaluator = distributed;
+        } else {
+            evaluator = new LocalEvaluator(episode, threads);
+        }
+        GenerationalEvolution evolution = new GenerationalEvolution(populationSize, evaluator, new Rng(seed));
+        if (selection != null) evolution.setSelection(Selection.byName(selection, populationSize));
+
+        GenomeArchive archive = (archivePath != null) ? new GenomeArchive(Paths.get(archivePath), Snake.GENES_COUNT) : null;
+        long firstGeneration = (archive != null && archive.size() > 0) ? archive.getGeneration(archive.size() - 1) + 1 : 0;
+
+        for (int generation = 0; generation < generations; generation++) {
+            long start = System.nanoTime();
+            evolution.nextGeneration();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("generation %d, best %.0f, mean %.1f, %.0f evaluations/s%n", generation, evolution.getBestFitness(), evolution.getMeanFitness(), populationSize / seconds);
+            if (archive != null) archive.append(firstGeneration + generation, evolution.getBestFitness(), evolution.getBestGenome());
+        }
+        evolution.shutdown();
+        if (archive != null) archive.close();
+    }
+}
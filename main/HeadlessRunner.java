@@ -0,0 +1,139 @@
+package main;
+
+import evolution.Selection;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import metrics.Metrics;
+import metrics.MetricsExporter;
+import nn.Activation;
+import nn.DNA;
+import nn.GenomeArchive;
+import snakes.Checkpoint;
+import snakes.FoodDynamics;
+import snakes.Snake;
+import snakes.World;
+import util.Rng;
+
+/**
+ * Runs the simulation without any window as fast as the CPU allows.
+ * Useful for long training on machines without display. Arguments are
+ * given as "--name value" pairs, e.g.
+ * "--ticks 1000000 --snakes 10 --width 1920 --height 1080". With 
+ * "--checkpoint file" the state is saved every "--checkpoint-every" ticks 
+ * and at the end, and the run continues from the file if it exists. With 
+ * "--archive file" the best snake is archived every "--archive-every" 
+ * ticks (if it changed). With "--metrics file.csv" (or .jsonl) metrics 
+ * are sampled every "--metrics-every" ticks and streamed into the file.
+ * "--food-dynamics static|drifting|seasonal" and "--season-length" change
+ * how food moves and where it appears.
+ * @author Jakub Medek
+ */
+public class HeadlessRunner {
+    public static void main(String[] args) throws IOException {
+        long ticks = 1000000;
+        long reportEvery = 10000;
+        int snakeCount = 10;
+        int maxFood = 12;
+        float foodSize = 10;
+        float bodySize = 20;
+        float padding = 20;
+        float snakeMaxHealth = 400;
+        float snakeHealthFromMeal = 400;
+        float width = 1920;
+        float height = 1080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean batched = true;
+        Activation activation = Activation.EXACT;
+        float viewRange = Float.POSITIVE_INFINITY;
+        long seed = System.nanoTime();
+        String selection = null;
+        FoodDynamics foodDynamics = null;
+        long seasonLength = 0;
+        Path checkpoint = null;
+        long checkpointEvery = 100000;
+        Path archivePath = null;
+        long archiveEvery = 1000;
+        Path metricsPath = null;
+        int metricsEvery = 1000;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i+1];
+            switch (args[i]) {
+                case "--ticks": ticks = Long.parseLong(value); break;
+                case "--report": reportEvery = Long.parseLong(value); break;
+                case "--snakes": snakeCount = Integer.parseInt(value); break;
+                case "--food": maxFood = Integer.parseInt(value); break;
+                case "--width": width = Float.parseFloat(value); break;
+                case "--height": height = Float.parseFloat(value); break;
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--batched": batched = Boolean.parseBoolean(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--selection": selection = value; break;
+                case "--checkpoint": checkpoint = Paths.get(value); break;
+                case "--checkpoint-every": checkpointEvery = Long.parseLong(value); break;
+                case "--archive": archivePath = Paths.get(value); break;
+                case "--archive-every": archiveEvery = Long.parseLong(value); break;
+                case "--metrics": metricsPath = Paths.get(value); break;
+                case "--metrics-every": metricsEvery = Integer.parseInt(value); break;
+                case "--view-range": viewRange = Float.parseFloat(value); break;
+                case "--activation": activation = Activation.valueOf(value.toUpperCase()); break;
+                case "--food-dynamics": foodDynamics = FoodDynamics.valueOf(value.toUpperCase()); break;
+                case "--season-length": seasonLength = Long.parseLong(value); break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    return;
+            }
+        }
+
+        World world;
+        if (checkpoint != null && Files.exists(checkpoint)) {
+            world = Checkpoint.load(checkpoint, null);
+            snakeCount = world.getSnakeCount();
+            System.out.println("Resumed from " + checkpoint + " at tick " + world.getTick());
+        } else {
+            System.out.println("Seed " + seed);
+            world = new World(snakeCount, maxFood, foodSize, bodySize, padding, snakeMaxHealth, snakeHealthFromMeal, width, height, new Rng(seed));
+        }
+        world.setParallelism(threads);
+        world.setActivation(activation);
+        world.setViewRange(viewRange);
+        world.setBatchedInference(batched);
+        if (selection != null) world.setSelection(Selection.byName(selection, snakeCount));
+        if (foodDynamics != null) world.setFoodDynamics(foodDynamics);
+        if (seasonLength > 0) world.setSeasonLength(seasonLength);
+
+        if (metricsPath != null) {
+            Metrics metrics = new Metrics(metricsEvery, 1000);
+            metrics.setExporter(new MetricsExporter(metricsPath));
+            world.setMetrics(metrics);
+        }
+
+        GenomeArchive archive = (archivePath != null) ? new GenomeArchive(archivePath, Snake.GENES_COUNT) : null;
+        DNA lastArchived = null;
+        long archiveOffset = 0;
+        if (archive != null && archive.size() > 0) archiveOffset = Math.max(0, archive.getGeneration(archive.size() - 1) + 1 - world.getTick());
+
+        long start = System.nanoTime();
+        long lastReport = start;
+        for (long tick = 1; tick <= ticks; tick++) {
+            world.step();
+            if (tick % reportEvery == 0) {
+                long now = System.nanoTime();
+                double ticksPerSecond = reportEvery / ((now - lastReport) / 1e9);
+                lastReport = now;
+                System.out.printf("tick %d, %.0f ticks/s, best fitness %.0f%n", world.getTick(), ticksPerSecond, world.getBestSnake().getFitness());
+            }
+            if (archive != null && tick % archiveEvery == 0 && world.getBestSnake().getDNA() != lastArchived) {
+                lastArchived = world.getBestSnake().getDNA();
+                archive.append(world.getTick() + archiveOffset, world.getBestSnake().getFitness(), lastArchived);
+            }
+            if (checkpoint != null && (tick % checkpointEvery == 0 || tick == ticks)) Checkpoint.save(world, null, checkpoint);
+        }
+        if (archive != null) archive.close();
+        if (world.getMetrics() != null) world.getMetrics().close();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Simulated %d ticks in %.1f s (%.0f ticks/s)%n", ticks, seconds, ticks / seconds);
+    }
+}
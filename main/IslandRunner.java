@@ -0,0 +1,64 @@
+package main;
+
+import evolution.IslandModel;
+import util.Rng;
+
+/**
+ * Runs the island model without any window - several populations, each 
+ * on its own thread, exchanging their best genomes. Arguments are given 
+ * as "--name value" pairs, e.g. "--islands 8 --snakes 50 --seconds 600".
+ * @author Jakub Medek
+ */
+public class IslandRunner {
+    public static void main(String[] args) throws InterruptedException {
+        int islandCount = Runtime.getRuntime().availableProcessors();
+        int snakeCount = 10;
+        int maxFood = 12;
+        float foodSize = 10;
+        float bodySize = 20;
+        float padding = 20;
+        float snakeMaxHealth = 400;
+        float snakeHealthFromMeal = 400;
+        float width = 1920;
+        float height = 1080;
+        int migrationInterval = 5000;
+        int migrantCount = 2;
+        int seconds = 60;
+        int reportEvery = 5;
+        long seed = System.nanoTime();
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i+1];
+            switch (args[i]) {
+                case "--islands": islandCount = Integer.parseInt(value); break;
+                case "--snakes": snakeCount = Integer.parseInt(value); break;
+                case "--food": maxFood = Integer.parseInt(value); break;
+                case "--width": width = Float.parseFloat(value); break;
+                case "--height": height = Float.parseFloat(value); break;
+                case "--migration-interval": migrationInterval = Integer.parseInt(value); break;
+                case "--migrants": migrantCount = Integer.parseInt(value); break;
+                case "--seconds": seconds = Integer.parseInt(value); break;
+                case "--report": reportEvery = Integer.parseInt(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    return;
+            }
+        }
+
+        System.out.println("Seed " + seed);
+        IslandModel model = new IslandModel(islandCount, snakeCount, maxFood, foodSize, bodySize, padding, snakeMaxHealth, snakeHealthFromMeal, width, height, migrationInterval, migrantCount, new Rng(seed));
+        model.start();
+        for (int elapsed = reportEvery; elapsed <= seconds; elapsed += reportEvery) {
+            Thread.sleep(reportEvery*1000L);
+            long totalTicks = 0;
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < model.getIslandCount(); i++) {
+                totalTicks += model.getTicks(i);
+                line.append(String.format(" %.0f", model.getBestFitness(i)));
+            }
+            System.out.printf("%d s, %.0f ticks/s in total, best fitness per island:%s%n", elapsed, totalTicks / (double)elapsed, line);
+        }
+        model.stop();
+    }
+}
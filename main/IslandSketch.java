@@ -0,0 +1,61 @@
+package main;
+
+import evolution.IslandModel;
+import processing.core.*;
+import util.Rng;
+import visualization.Graph;
+
+/**
+ * Window, which runs the island model in the background and shows a 
+ * graph of the best fitness of every island (one color per island, one 
+ * value per migration).
+ * @author Jakub Medek
+ */
+public class IslandSketch extends PApplet {
+    IslandModel model;
+    Graph graph;
+
+    /**
+     * Starts the sketch.
+     * @param args Not used.
+     */
+    public static void main(String[] args) {
+        PApplet.main("main.IslandSketch");
+    }
+
+    /**
+     * Sets size of the window.
+     */
+    @Override
+    public void settings() {
+        size(1280, 720);
+    }
+
+    /**
+     * Makes and starts the islands.
+     */
+    @Override
+    public void setup() {
+        frameRate(60);
+        int islandCount = Math.max(1, Runtime.getRuntime().availableProcessors());
+        model = new IslandModel(islandCount, 10, 12, 10, 20, 20, 400, 400, 1920, 1080, 5000, 2, new Rng(System.nanoTime()));
+        graph = new Graph(20, 60, width - 40, height - 80, width/4, model.getFitnessHistory());
+        model.start();
+    }
+
+    /**
+     * Displays the graph, islands fill it at every migration.
+     */
+    @Override
+    public void draw() {
+        background(0);
+        graph.display(this);
+
+        fill(255);
+        textAlign(LEFT, TOP);
+        textSize(14);
+        StringBuilder info = new StringBuilder("Best fitness per island:");
+        for (int i = 0; i < model.getIslandCount(); i++) info.append(String.format(" %.0f", model.getBestFitness(i)));
+        text(info.toString(), 20, 20);
+    }
+}
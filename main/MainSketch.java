@@ -1,7 +1,17 @@
 package main;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import nn.DNA;
+import nn.GenomeArchive;
 import processing.core.*;
+import processing.event.MouseEvent;
 import snakes.Box;
+import snakes.Snake;
+import snakes.World;
 
 /**
  * Main class of the simulation. It handles the window. It is based on
@@ -9,7 +19,22 @@ import snakes.Box;
  * @author Jakub Medek
  */
 public class MainSketch extends PApplet{ 
+    /**
+     * Time between checkpoints (5 minutes).
+     */
+    static final long CHECKPOINT_EVERY_NANOS = 5*60*1000000000L;
+
+    /**
+     * Number of ticks between archiving the best snake.
+     */
+    static final int ARCHIVE_EVERY = 60;
+
     Box box;
+    Path checkpoint;
+    GenomeArchive archive;
+    DNA lastArchived;
+    long archiveOffset;
+    long lastCheckpointNanos = System.nanoTime();
     
     /**
      * Sets some basic settings of the window (its size).
@@ -21,7 +46,11 @@ public class MainSketch extends PApplet{
     }
     
     /**
-     * Sets the enviroment (limits framerate) and makes the simulation object.
+     * Sets the enviroment (limits framerate), makes the simulation object 
+     * and starts it. If there is a checkpoint from the last run, the 
+     * simulation continues from it. Archiving and checkpoints are done 
+     * by the simulation thread between ticks. The world has its own size,
+     * independent of the window, which shows it through a camera.
      */
     @Override
     public void setup() {
@@ -34,21 +63,89 @@ public class MainSketch extends PApplet{
         float padding = 20;
         float snakeMaxHealth = 400;
         float snakeHealthFromMeal = 400;
+        float worldWidth = 1920;
+        float worldHeight = 1080;
         PApplet applet = this;
-        box = new Box(snakeCount, maxFood, foodSize, bodySize, padding, snakeMaxHealth, snakeHealthFromMeal, applet);
+        checkpoint = Paths.get(sketchPath("checkpoint.bin"));
+        if (Files.exists(checkpoint)) {
+            try {
+                box = Box.loadCheckpoint(checkpoint, applet);
+            } catch (IOException e) {
+                System.err.println("Loading checkpoint failed, starting a new simulation: " + e);
+            }
+        }
+        if (box == null) box = new Box(snakeCount, maxFood, foodSize, bodySize, padding, snakeMaxHealth, snakeHealthFromMeal, worldWidth, worldHeight, applet);
+
+        try {
+            archive = new GenomeArchive(Paths.get(sketchPath("genomes.archive")), Snake.GENES_COUNT);
+            if (archive.size() > 0) archiveOffset = Math.max(0, archive.getGeneration(archive.size() - 1) + 1 - box.getWorld().getTick());
+        } catch (IOException e) {
+            System.err.println("Opening genome archive failed, genomes won't be archived: " + e);
+        }
+
+        box.getSimulation().addTickListener(world -> {
+            if (world.getTick() % ARCHIVE_EVERY == 0) archiveBestSnake(world);
+            if (System.nanoTime() - lastCheckpointNanos >= CHECKPOINT_EVERY_NANOS) {
+                lastCheckpointNanos = System.nanoTime();
+                box.saveCheckpoint(checkpoint);
+            }
+        });
+        box.start();
     }
     
     /**
      * Should get called about 60 times per second (this is set by frameRate 
-     * funcion). Updates the simulation.
+     * funcion). Displays the simulation, which runs on its own.
      */
     @Override
     public void draw() {
         background(0);
-        
-        box.manageFood();
-        box.manageSnakes();
-        box.displayInfo();
+        box.display();
+    }
+
+    /**
+     * Archives the best snake (with the tick as its generation), if it 
+     * changed since the last time.
+     * @param world The simulation.
+     */
+    private void archiveBestSnake(World world) {
+        Snake best = world.getBestSnake();
+        if (archive == null || best.getDNA() == lastArchived) return;
+        try {
+            archive.append(world.getTick() + archiveOffset, best.getFitness(), best.getDNA());
+            lastArchived = best.getDNA();
+        } catch (IOException e) {
+            System.err.println("Archiving genome failed: " + e);
+            archive = null;
+        }
+    }
+
+    /**
+     * Gets called, when the sketch is closing. Stops the simulation, saves 
+     * the last checkpoint and waits until it is written.
+     */
+    @Override
+    public void dispose() {
+        if (box != null) {
+            try {
+                box.stop();
+                // a checkpoint still being written would make the save skipped
+                box.awaitCheckpoint();
+                box.saveCheckpoint(checkpoint).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                System.err.println("Saving checkpoint failed: " + e.getCause());
+            }
+        }
+        if (archive != null) {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                System.err.println("Closing genome archive failed: " + e);
+            }
+        }
+        super.dispose();
     }
     
     /**
@@ -58,4 +155,21 @@ public class MainSketch extends PApplet{
     public void keyPressed() {
         box.keyPressed(key);
     }
+
+    /**
+     * Gets called, when the mouse is dragged. Moves the camera.
+     */
+    @Override
+    public void mouseDragged() {
+        box.mouseDragged(mouseX - pmouseX, mouseY - pmouseY);
+    }
+
+    /**
+     * Gets called, when the mouse wheel is turned. Zooms the camera.
+     * @param event The mouse event.
+     */
+    @Override
+    public void mouseWheel(MouseEvent event) {
+        box.mouseWheel(event.getCount(), mouseX, mouseY);
+    }
 }
\ No newline at end of file
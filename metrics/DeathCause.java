@@ -0,0 +1,21 @@
+package metrics;
+
+/**
+ * Reasons why a snake can die.
+ * 
+ * @author Jakub Medek
+ */
+public enum DeathCause {
+    /**
+     * Snake hit a wall of the arena.
+     */
+    WALL,
+    /**
+     * Snake hit its own body.
+     */
+    BODY,
+    /**
+     * Snake ran out of health.
+     */
+    STARVATION
+}
@@ -0,0 +1,198 @@
+package metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects metrics of a running simulation. The simulation reports time
+ * spent in phases (from any thread) and deaths, and every few ticks takes
+ * a sample with the fitness of its snakes. Samples are kept in memory
+ * (the last few, for queries from the program, e.g. the window) and
+ * optionally streamed into a file.
+ *
+ * @author Jakub Medek
+ */
+public class Metrics {
+    final int sampleEvery;
+    final int historySize;
+    final ArrayDeque<Sample> history = new ArrayDeque<>();
+    final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+    final long[] deaths = new long[DeathCause.values().length];
+    final long[] totalDeaths = new long[DeathCause.values().length];
+    MetricsExporter exporter;
+
+    final long startNanos = System.nanoTime();
+    long lastSampleNanos = startNanos;
+    long lastSampleTick = -1;
+    Map<Long, Long> lastAllocated = new HashMap<>();
+    final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Constructor.
+     * @param sampleEvery Number of ticks between samples.
+     * @param historySize Number of samples kept in memory.
+     */
+    public Metrics(int sampleEvery, int historySize) {
+        this.sampleEvery = sampleEvery;
+        this.historySize = historySize;
+        allocatedSinceLast();
+    }
+
+    /**
+     * Streams every following sample into a file.
+     * @param exporter Opened exporter, closed by close.
+     */
+    public void setExporter(MetricsExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    /**
+     * Adds time spent in a phase. Can be called from any thread.
+     * @param phase The phase.
+     * @param nanos Time in nanoseconds.
+     */
+    public void addTime(Phase phase, long nanos) {
+        phaseNanos.addAndGet(phase.ordinal(), nanos);
+    }
+
+    /**
+     * Counts a death. Has to be called from the thread of the simulation.
+     * @param cause Cause of the death.
+     */
+    public void recordDeath(DeathCause cause) {
+        deaths[cause.ordinal()]++;
+    }
+
+    /**
+     * Checks if a sample should be taken after a tick.
+     * @param tick Number of ticks simulated.
+     * @return True every sampleEvery ticks.
+     */
+    public boolean isSampleTick(long tick) {
+        return tick % sampleEvery == 0;
+    }
+
+    /**
+     * Takes a sample. Has to be called from the thread of the simulation.
+     * @param tick Number of ticks simulated.
+     * @param fitness Fitness of the living snakes, gets sorted.
+     * @return The new sample.
+     */
+    public Sample sample(long tick, float[] fitness) {
+        long now = System.nanoTime();
+        long ticks = (lastSampleTick < 0) ? sampleEvery : Math.max(1, tick - lastSampleTick);
+        double seconds = Math.max(1e-9, (now - lastSampleNanos)/1e9);
+
+        double[] phaseMillis = new double[Phase.values().length];
+        for (int i = 0; i < phaseMillis.length; i++) phaseMillis[i] = phaseNanos.getAndSet(i, 0)/1e6/ticks;
+
+        long allocated = allocatedSinceLast();
+        double allocationRate = (allocated < 0) ? -1 : allocated/seconds;
+
+        Arrays.sort(fitness);
+        Sample sample = new Sample(tick, (now - startNanos)/1000000, ticks/seconds, phaseMillis, fitness, deaths.clone(), allocationRate);
+        lastSampleNanos = now;
+        lastSampleTick = tick;
+
+        synchronized (history) {
+            for (int i = 0; i < deaths.length; i++) totalDeaths[i] += deaths[i];
+            history.addLast(sample);
+            if (history.size() > historySize) history.removeFirst();
+        }
+        Arrays.fill(deaths, 0);
+        if (exporter != null) {
+            try {
+                exporter.export(sample);
+            } catch (IOException e) {
+                System.err.println("Exporting metrics failed, export stopped: " + e);
+                exporter = null;
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * Returns the number of bytes allocated by living threads since the
+     * last call, if the JVM can measure it. Every thread is compared with
+     * its own previous value, so threads which ended don't make it go
+     * down and new threads are counted from their start.
+     * @return Number of bytes or -1.
+     */
+    private long allocatedSinceLast() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean)threads;
+        if (!allocation.isThreadAllocatedMemorySupported() || !allocation.isThreadAllocatedMemoryEnabled()) return -1;
+        long[] ids = threads.getAllThreadIds();
+        long[] allocated = allocation.getThreadAllocatedBytes(ids);
+        Map<Long, Long> current = new HashMap<>();
+        long sum = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (allocated[i] < 0) continue;
+            Long previous = lastAllocated.get(ids[i]);
+            sum += Math.max(0, allocated[i] - ((previous == null) ? 0 : previous));
+            current.put(ids[i], allocated[i]);
+        }
+        lastAllocated = current;
+        return sum;
+    }
+
+    /**
+     * Returns the last sample.
+     * @return The sample or null, if there is none yet.
+     */
+    public Sample getLatest() {
+        synchronized (history) {
+            return history.peekLast();
+        }
+    }
+
+    /**
+     * Returns samples kept in memory.
+     * @return Copy of the samples from the oldest one.
+     */
+    public List<Sample> getHistory() {
+        synchronized (history) {
+            return new ArrayList<>(history);
+        }
+    }
+
+    /**
+     * Returns samples taken at or after a tick.
+     * @param tick The first tick of interest.
+     * @return Copy of the samples from the oldest one.
+     */
+    public List<Sample> getHistorySince(long tick) {
+        List<Sample> samples = new ArrayList<>();
+        synchronized (history) {
+            for (Sample sample : history) if (sample.tick >= tick) samples.add(sample);
+        }
+        return samples;
+    }
+
+    /**
+     * Returns number of deaths of one cause up to the last sample.
+     * @param cause Cause of death.
+     * @return Number of deaths.
+     */
+    public long getTotalDeaths(DeathCause cause) {
+        synchronized (history) {
+            return totalDeaths[cause.ordinal()];
+        }
+    }
+
+    /**
+     * Closes the exporter, if there is one.
+     * @throws IOException If closing fails.
+     */
+    public void close() throws IOException {
+        if (exporter != null) exporter.close();
+    }
+}
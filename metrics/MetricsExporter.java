@@ -0,0 +1,53 @@
+package metrics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Streams samples into a file, one line per sample, either as CSV (with
+ * a header) or as JSON lines. Every line is flushed, so the file can be
+ * followed while the simulation runs.
+ * 
+ * @author Jakub Medek
+ */
+public class MetricsExporter implements Closeable {
+    final BufferedWriter writer;
+    final boolean json;
+
+    /**
+     * Constructor, which opens the file. Format is picked by extension - 
+     * ".jsonl" or ".json" for JSON lines, anything else for CSV.
+     * @param file File to write (replaced, if it exists).
+     * @throws IOException If the file can't be opened.
+     */
+    public MetricsExporter(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        json = name.endsWith(".jsonl") || name.endsWith(".json");
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        if (!json) {
+            writer.write(Sample.csvHeader());
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    /**
+     * Writes one sample.
+     * @param sample Sample to write.
+     * @throws IOException If writing fails.
+     */
+    public void export(Sample sample) throws IOException {
+        writer.write(json ? sample.toJson() : sample.toCsv());
+        writer.newLine();
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
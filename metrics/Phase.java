@@ -0,0 +1,29 @@
+package metrics;
+
+/**
+ * Phases of one tick of the simulation, which are timed separately.
+ * 
+ * @author Jakub Medek
+ */
+public enum Phase {
+    /**
+     * Building vision of the snakes.
+     */
+    SENSE,
+    /**
+     * Evaluating neural networks.
+     */
+    THINK,
+    /**
+     * Moving snakes and food, updating health.
+     */
+    MOVE,
+    /**
+     * Checking collisions with food, walls and bodies.
+     */
+    COLLIDE,
+    /**
+     * Breeding snakes in place of dead ones.
+     */
+    REPRODUCE
+}
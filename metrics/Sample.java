@@ -0,0 +1,168 @@
+package metrics;
+
+import java.util.Locale;
+
+/**
+ * One sample of metrics of the simulation - speed, time spent in every
+ * phase, distribution of fitness, deaths and allocation. Values, which
+ * are counted between samples (time of phases, deaths, allocation), cover
+ * the time since the previous sample.
+ *
+ * @author Jakub Medek
+ */
+public class Sample {
+    /**
+     * Tick, when the sample was taken.
+     */
+    public final long tick;
+
+    /**
+     * Time of the sample in milliseconds since the start of metrics.
+     */
+    public final long timeMillis;
+
+    /**
+     * Simulated ticks per second since the previous sample.
+     */
+    public final double ticksPerSecond;
+
+    /**
+     * Average time of every phase per tick in milliseconds, indexed by
+     * Phase.ordinal(). Phases running on several threads count time of all
+     * the threads together.
+     */
+    public final double[] phaseMillis;
+
+    /**
+     * Distribution of fitness of the living snakes.
+     */
+    public final float fitnessMin, fitnessMean, fitnessMedian, fitnessP90, fitnessMax;
+
+    /**
+     * Number of living snakes.
+     */
+    public final int alive;
+
+    /**
+     * Number of deaths since the previous sample, indexed by
+     * DeathCause.ordinal().
+     */
+    public final long[] deaths;
+
+    /**
+     * Bytes allocated per second by all threads since the previous sample,
+     * -1 if the JVM can't measure it.
+     */
+    public final double allocatedBytesPerSecond;
+
+    /**
+     * Constructor, which just sets the values.
+     * @param tick Tick, when the sample was taken.
+     * @param timeMillis Time of the sample since the start of metrics.
+     * @param ticksPerSecond Simulated ticks per second.
+     * @param phaseMillis Average time of every phase per tick.
+     * @param fitness Sorted fitness of the living snakes.
+     * @param deaths Number of deaths by cause.
+     * @param allocatedBytesPerSecond Allocation rate.
+     */
+    Sample(long tick, long timeMillis, double ticksPerSecond, double[] phaseMillis, float[] fitness, long[] deaths, double allocatedBytesPerSecond) {
+        this.tick = tick;
+        this.timeMillis = timeMillis;
+        this.ticksPerSecond = ticksPerSecond;
+        this.phaseMillis = phaseMillis;
+        this.deaths = deaths;
+        this.allocatedBytesPerSecond = allocatedBytesPerSecond;
+        alive = fitness.length;
+        if (fitness.length == 0) {
+            fitnessMin = fitnessMean = fitnessMedian = fitnessP90 = fitnessMax = 0;
+            return;
+        }
+        double sum = 0;
+        for (float value : fitness) sum += value;
+        fitnessMin = fitness[0];
+        fitnessMean = (float)(sum/fitness.length);
+        fitnessMedian = fitness[fitness.length/2];
+        fitnessP90 = fitness[Math.min(fitness.length - 1, (int)(fitness.length*0.9f))];
+        fitnessMax = fitness[fitness.length - 1];
+    }
+
+    /**
+     * Returns time of one phase per tick.
+     * @param phase The phase.
+     * @return Time in milliseconds.
+     */
+    public double getPhaseMillis(Phase phase) {
+        return phaseMillis[phase.ordinal()];
+    }
+
+    /**
+     * Returns number of deaths of one cause since the previous sample.
+     * @param cause Cause of death.
+     * @return Number of deaths.
+     */
+    public long getDeaths(DeathCause cause) {
+        return deaths[cause.ordinal()];
+    }
+
+    /**
+     * Returns names of the CSV columns.
+     * @return Header line without line break.
+     */
+    public static String csvHeader() {
+        StringBuilder line = new StringBuilder("tick,time_ms,ticks_per_second");
+        for (Phase phase : Phase.values()) line.append(',').append(phase.name().toLowerCase(Locale.ROOT)).append("_ms");
+        line.append(",fitness_min,fitness_mean,fitness_median,fitness_p90,fitness_max,alive");
+        for (DeathCause cause : DeathCause.values()) line.append(",deaths_").append(cause.name().toLowerCase(Locale.ROOT));
+        return line.append(",allocated_bytes_per_second").toString();
+    }
+
+    /**
+     * Returns the sample as a CSV line matching csvHeader.
+     * @return Line without line break.
+     */
+    public String toCsv() {
+        StringBuilder line = new StringBuilder();
+        line.append(tick).append(',').append(timeMillis).append(',').append(format(ticksPerSecond));
+        for (double millis : phaseMillis) line.append(',').append(format(millis));
+        line.append(',').append(fitnessMin).append(',').append(fitnessMean).append(',').append(fitnessMedian);
+        line.append(',').append(fitnessP90).append(',').append(fitnessMax).append(',').append(alive);
+        for (long count : deaths) line.append(',').append(count);
+        return line.append(',').append(format(allocatedBytesPerSecond)).toString();
+    }
+
+    /**
+     * Returns the sample as one JSON object.
+     * @return JSON without line break.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"tick\":").append(tick);
+        json.append(",\"time_ms\":").append(timeMillis);
+        json.append(",\"ticks_per_second\":").append(format(ticksPerSecond));
+        json.append(",\"phase_ms\":{");
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0) json.append(',');
+            json.append('"').append(phase.name().toLowerCase(Locale.ROOT)).append("\":").append(format(phaseMillis[phase.ordinal()]));
+        }
+        json.append("},\"fitness\":{\"min\":").append(fitnessMin).append(",\"mean\":").append(fitnessMean);
+        json.append(",\"median\":").append(fitnessMedian).append(",\"p90\":").append(fitnessP90).append(",\"max\":").append(fitnessMax);
+        json.append("},\"alive\":").append(alive);
+        json.append(",\"deaths\":{");
+        for (DeathCause cause : DeathCause.values()) {
+            if (cause.ordinal() > 0) json.append(',');
+            json.append('"').append(cause.name().toLowerCase(Locale.ROOT)).append("\":").append(deaths[cause.ordinal()]);
+        }
+        json.append("},\"allocated_bytes_per_second\":").append(format(allocatedBytesPerSecond));
+        return json.append('}').toString();
+    }
+
+    /**
+     * Formats a number with at most three decimal places (and dot as the
+     * decimal separator, whatever the locale is).
+     * @param value The number.
+     * @return Formatted number.
+     */
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,81 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Fixed-size time series of float values in a ring buffer. New values
+ * overwrite the oldest ones, so adding is O(1) and never allocates.
+ *
+ * There is one writer thread (usually the simulation, adding a value
+ * every few ticks), but any number of reader threads (e.g. the window
+ * drawing a graph) without any lock. The writer publishes a value by
+ * increasing the volatile count after storing it. A reader copies the
+ * values it wants and then checks the count again - if the writer went
+ * around the ring and overwrote some of the copied values meanwhile (or
+ * is just overwriting one of them), the copy is repeated. Values are kept
+ * as float bits in an atomic array, so reading them cannot be moved after
+ * the second check of the count, and the ring has one spare slot, so
+ * the value being written never hits a copied one, when a reader copies
+ * the whole series.
+ *
+ * @author Jakub Medek
+ */
+public class TimeSeries {
+    final AtomicIntegerArray values;
+    final int slots;
+    volatile long count = 0;
+
+    /**
+     * Constructor, which makes an empty series.
+     * @param capacity Number of newest values kept.
+     */
+    public TimeSeries(int capacity) {
+        slots = capacity + 1;
+        values = new AtomicIntegerArray(slots);
+    }
+
+    /**
+     * Adds a value, can be called only from one thread.
+     * @param value Value to be added.
+     */
+    public void add(float value) {
+        long next = count;
+        values.set((int)(next % slots), Float.floatToRawIntBits(value));
+        count = next + 1;
+    }
+
+    /**
+     * Copies the newest values. They are aligned to the end of the array
+     * (the newest value is last), the start of the array is filled with
+     * zeros, if there are not enough values yet.
+     * @param into Array to copy the values into.
+     * @return Number of values copied.
+     */
+    public int copyLatest(float[] into) {
+        while (true) {
+            long end = count;
+            int copied = (int)Math.min(into.length, Math.min(end, capacity()));
+            int start = into.length - copied;
+            for (int i = 0; i < start; i++) into[i] = 0;
+            for (int i = 0; i < copied; i++) into[start + i] = Float.intBitsToFloat(values.get((int)((end - copied + i) % slots)));
+            // value number count may be being written, so values up to count - slots may be overwritten
+            if (count - slots < end - copied) return copied;
+        }
+    }
+
+    /**
+     * Returns number of values kept.
+     * @return Capacity of the series.
+     */
+    public int capacity() {
+        return slots - 1;
+    }
+
+    /**
+     * Returns number of values added so far (including overwritten ones).
+     * @return Number of values.
+     */
+    public long count() {
+        return count;
+    }
+}
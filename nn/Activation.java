@@ -0,0 +1,70 @@
+package nn;
+
+/**
+ * Sigmoid activation functions g(x) = 1/(1+e^(-x)) for neural networks. 
+ * Besides the exact one there are faster approximations, which differ 
+ * from it only slightly.
+ * 
+ * @author Jakub Medek
+ */
+public enum Activation {
+    /**
+     * Exact sigmoid calculated with Math.exp.
+     */
+    EXACT {
+        @Override
+        public float apply(float value) {
+            return (float)(1/(1+Math.exp(-value)));
+        }
+    },
+
+    /**
+     * Sigmoid looked up in a precomputed table with linear interpolation. 
+     * Values outside of the table are clamped (error below 0.0004).
+     */
+    TABLE {
+        @Override
+        public float apply(float value) {
+            if (value <= -TABLE_RANGE) return SIGMOID_TABLE[0];
+            if (value >= TABLE_RANGE) return SIGMOID_TABLE[TABLE_SIZE];
+            float position = (value + TABLE_RANGE)*TABLE_SCALE;
+            int index = (int)position;
+            float fraction = position - index;
+            return SIGMOID_TABLE[index] + (SIGMOID_TABLE[index+1] - SIGMOID_TABLE[index])*fraction;
+        }
+    },
+
+    /**
+     * Sigmoid calculated as 0.5+0.5*tanh(x/2), where tanh is approximated 
+     * by rational function y*(27+y^2)/(27+9*y^2) (error below 0.012).
+     */
+    RATIONAL {
+        @Override
+        public float apply(float value) {
+            float y = value*0.5f;
+            if (y >= 3) return 1;
+            if (y <= -3) return 0;
+            float y2 = y*y;
+            return 0.5f + 0.5f*y*(27 + y2)/(27 + 9*y2);
+        }
+    };
+
+    static final float TABLE_RANGE = 8;
+    static final int TABLE_SIZE = 1024;
+    static final float TABLE_SCALE = TABLE_SIZE/(2*TABLE_RANGE);
+    static final float[] SIGMOID_TABLE = new float[TABLE_SIZE + 1];
+
+    static {
+        for (int i = 0; i <= TABLE_SIZE; i++) {
+            double x = i/(double)TABLE_SCALE - TABLE_RANGE;
+            SIGMOID_TABLE[i] = (float)(1/(1+Math.exp(-x)));
+        }
+    }
+
+    /**
+     * Activates a value.
+     * @param value Value to be activated.
+     * @return Result, after the activation.
+     */
+    public abstract float apply(float value);
+}
@@ -1,114 +1,176 @@
 package nn;
 
+import util.Rng;
+
 /**
- * Class which handles the DNA of some creature. It takes care of creating 
+ * Class which handles the DNA of some creature. It takes care of creating
  * random DNA, mixing with another DNA and mutating.
- * 
+ *
+ * Genes (bytes) are stored packed in long words, eight genes per word with
+ * the first gene in the highest bits, so crossover and mutation work on
+ * whole words and do not unpack anything. The genes as an array of bytes
+ * (for saving and sending) are made only when asked for and kept until
+ * the DNA changes.
+ *
  * @author Jakub Medek
  */
 public class DNA {
-    public byte[] genes;
+    final long[] words;
+    final int genesCount;
+    byte[] genes;
 
     /**
      * Creates a DNA with random genes.
      * @param genesCount Number of genes to use.
+     * @param rng Random generator to use.
      */
-    public DNA(int genesCount) {
-        genes = new byte[genesCount];
-        for (int i = 0; i < genes.length; i++) genes[i] = (byte) (Math.random()*255-128);
+    public DNA(int genesCount, Rng rng) {
+        this.genesCount = genesCount;
+        words = new long[wordsFor(genesCount)];
+        for (int i = 0; i < genesCount; i++) setGene(i, (byte) (rng.nextDouble()*255-128));
     }
 
     /**
-     * Creates a DNA with predefined genes.
+     * Creates a DNA with predefined genes. The genes are copied, so the
+     * array can be changed afterwards.
      * @param genes Genes to use.
      */
     public DNA(byte[] genes) {
-        this.genes = genes;
+        genesCount = genes.length;
+        words = new long[wordsFor(genesCount)];
+        for (int i = 0; i < genesCount; i++) setGene(i, genes[i]);
     }
 
     /**
-     * Making a genes crossover (mixing it with another DNA) based on 
-     * random pivot.
-     * @param partner Another DNA to mix with.
-     * @return Returns a new DNA which is a result of the crossover.
+     * Creates a DNA from packed genes.
+     * @param words Packed genes, used directly.
+     * @param genesCount Number of genes.
      */
-    public DNA crossover(DNA partner) {
-        boolean[] childGensBinary = new boolean[genes.length*8];
-        boolean[] thisGenesBinary = bytesToBinaryArray(this.genes);
-        boolean[] partersGenesBinary = bytesToBinaryArray(partner.genes);
-
-        boolean parentIsThis = Math.random()<0.5;
-        for (int i = 0; i < childGensBinary.length; i++) {
-            if (parentIsThis) {
-                childGensBinary[i] = thisGenesBinary[i];
-            } else {
-                childGensBinary[i] = partersGenesBinary[i];
-            }
-            if (Math.random()<0.01) parentIsThis = !parentIsThis;
-        }
+    DNA(long[] words, int genesCount) {
+        this.words = words;
+        this.genesCount = genesCount;
+    }
 
-        byte[] childGens = binaryToByteArray(childGensBinary);
+    /**
+     * Returns number of genes.
+     * @return Number of genes.
+     */
+    public int getGenesCount() {
+        return genesCount;
+    }
 
-        return new DNA(childGens);
+    /**
+     * Returns one gene.
+     * @param i Index of the gene.
+     * @return The gene.
+     */
+    public byte getGene(int i) {
+        return (byte)(words[i >>> 3] >>> (56 - 8*(i & 7)));
     }
 
     /**
-     * Converts an array of bytes to 8 times larger array of boolean.
-     * @param bytesToConvert Array of bytes to convert.
-     * @return Boolean array, which is binary representation of byte array 
-     * on input.
+     * Returns all genes as an array of bytes. The array is shared until
+     * the DNA changes, so it must not be modified.
+     * @return Array of genes.
      */
-    private boolean[] bytesToBinaryArray(byte[] bytesToConvert) {
-        boolean[] binaryArray = new boolean[bytesToConvert.length*8];
-
-        for (int i = 0; i < bytesToConvert.length; i++) {
-            byte byteToConvert = bytesToConvert[i];
-            binaryArray[7+i*8] = ((byteToConvert & 0x01) != 0);
-            binaryArray[6+i*8] = ((byteToConvert & 0x02) != 0);
-            binaryArray[5+i*8] = ((byteToConvert & 0x04) != 0);
-            binaryArray[4+i*8] = ((byteToConvert & 0x08) != 0);
-            binaryArray[3+i*8] = ((byteToConvert & 0x10) != 0);
-            binaryArray[2+i*8] = ((byteToConvert & 0x20) != 0);
-            binaryArray[1+i*8] = ((byteToConvert & 0x40) != 0);
-            binaryArray[0+i*8] = ((byteToConvert & 0x80) != 0);
+    public byte[] getGenes() {
+        if (genes == null) {
+            genes = new byte[genesCount];
+            for (int i = 0; i < genesCount; i++) genes[i] = getGene(i);
         }
+        return genes;
+    }
+
+    /**
+     * Sets one gene.
+     * @param i Index of the gene.
+     * @param gene The gene.
+     */
+    private void setGene(int i, byte gene) {
+        int shift = 56 - 8*(i & 7);
+        words[i >>> 3] = (words[i >>> 3] & ~(0xFFL << shift)) | ((gene & 0xFFL) << shift);
+    }
 
+    /**
+     * Making a genes crossover (mixing it with another DNA). Child takes
+     * bits from one parent and after every bit it switches to the other
+     * parent with probability 0.01. Instead of going bit by bit, lengths
+     * of the parts are drawn directly and the parts are copied a whole
+     * word of 64 bits at a time using bit masks.
+     * @param partner Another DNA to mix with.
+     * @param rng Random generator to use.
+     * @return Returns a new DNA which is a result of the crossover.
+     */
+    public DNA crossover(DNA partner, Rng rng) {
+        long[] childWords = words.clone();
+        int bitsCount = genesCount*8;
+
+        boolean parentIsThis = rng.nextDouble()<0.5;
+        int position = 0;
+        while (position < bitsCount) {
+            int end = (int)Math.min(bitsCount, (long)position + geometric(0.01, rng) + 1);
+            if (!parentIsThis) copyBits(partner.words, childWords, position, end);
+            position = end;
+            parentIsThis = !parentIsThis;
+        }
 
-        return binaryArray;
+        return new DNA(childWords, genesCount);
     }
 
     /**
-     * Converts an array of boolean to 8 times smaller array of bytes.
-     * @param binaryToConvert Array of boolean values to convert.
-     * @return Byte array, which is byte representation of boolean array 
-     * on input.
+     * Copies bits from one array of words to another one.
+     * @param from Words to copy bits from.
+     * @param to Words to copy bits to.
+     * @param start Index of first bit to copy (inclusive).
+     * @param end Index of last bit to copy (exclusive).
      */
-    private byte[] binaryToByteArray(boolean[] binaryToConvert) {
-        byte[] byteArray = new byte[binaryToConvert.length/8];
-
-        for (int i = 0; i < byteArray.length; i++) {
-            byte value = 0;
-            for (int j = 0; j < 8; j++) {
-                value*=2;
-                value+=binaryToConvert[i*8+j]?1:0;
-            }
-            byteArray[i] = value;
+    private static void copyBits(long[] from, long[] to, int start, int end) {
+        for (int word = start >>> 6; word < to.length && word*64 < end; word++) {
+            int first = Math.max(start - word*64, 0);
+            int last = Math.min(end - word*64, 64);
+            long mask = (-1L >>> first) & ((last == 64) ? -1L : ~(-1L >>> last));
+            to[word] = (to[word] & ~mask) | (from[word] & mask);
         }
+    }
 
-        return byteArray;
+    /**
+     * Returns number of words needed for given number of genes.
+     * @param genesCount Number of genes.
+     * @return Number of words, 8 times smaller (rounded up).
+     */
+    private static int wordsFor(int genesCount) {
+        return (genesCount + 7)/8;
+    }
+
+    /**
+     * Draws number of failures before first success in Bernoulli trials
+     * (geometric distribution), i.e. how many bits to skip before the next
+     * one gets hit when every bit is hit with given probability.
+     * @param probability Probability of success of one trial.
+     * @param rng Random generator to use.
+     * @return Number of failures, Integer.MAX_VALUE if it can never succeed.
+     */
+    static int geometric(double probability, Rng rng) {
+        if (probability >= 1) return 0;
+        if (!(probability > 0)) return Integer.MAX_VALUE;
+        double failures = Math.floor(Math.log(1 - rng.nextDouble())/Math.log(1 - probability));
+        return (failures >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)failures;
     }
 
     /**
-     * Mutating genes of this DNA. Random mutation based on mutation rate.
+     * Mutating genes of this DNA. Random mutation based on mutation rate -
+     * every bit flips with the probability of mutation rate. Flipped bits
+     * are found directly by drawing gaps between them.
      * @param mutationRate Mutation rate for random mutation.
+     * @param rng Random generator to use.
      */
-    public void mutate(float mutationRate) {
-        boolean[] genesBinary = bytesToBinaryArray(genes);
-        for (int i = 0; i < genesBinary.length; i++) {
-            if (Math.random() < mutationRate) {
-                genesBinary[i] = !genesBinary[i];
-            }
+    public void mutate(float mutationRate, Rng rng) {
+        long bitsCount = genesCount*8L;
+        long position = geometric(mutationRate, rng);
+        while (position < bitsCount) {
+            words[(int)(position >>> 6)] ^= Long.MIN_VALUE >>> (position & 63);
+            genes = null;
+            position += geometric(mutationRate, rng) + 1L;
         }
-        genes = binaryToByteArray(genesBinary);
     }
 }
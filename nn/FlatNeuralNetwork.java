@@ -0,0 +1,107 @@
+package nn;
+
+/**
+ * Class, which makes a neural network with the same behaviour as 
+ * NeuralNetwork, but all its weights are stored in one flat array and 
+ * all neurons are preallocated, so calculating the output does not 
+ * allocate anything. Activation function can be chosen.
+ * @author Jakub Medek
+ */
+public class FlatNeuralNetwork {
+    public float[][] layers;
+    public float[] weights;
+    Activation activation;
+
+    /**
+     * Makes a neural network based on required number of layers, number 
+     * of neurons in layer and DNA object. It takes care of bias 
+     * automaticly (provide the neuron count without bias). Uses exact 
+     * activation function.
+     * @param layersCount An array to specify the NN. Length of the array 
+     * means number of layers and each number means number of neurons in 
+     * that layer (plus bias, constructor adds it automatically).
+     * @param dna DNA object, which holds genes in array of bytes. Genes 
+     * are used to create weights.
+     */
+    public FlatNeuralNetwork(int[] layersCount, DNA dna) {
+        this(layersCount, dna, Activation.EXACT);
+    }
+
+    /**
+     * Makes a neural network based on required number of layers, number 
+     * of neurons in layer, DNA object and activation function. It takes 
+     * care of bias automaticly (provide the neuron count without bias).
+     * @param layersCount An array to specify the NN. Length of the array 
+     * means number of layers and each number means number of neurons in 
+     * that layer (plus bias, constructor adds it automatically).
+     * @param dna DNA object, which holds genes in array of bytes. Genes 
+     * are used to create weights, in the same order as in NeuralNetwork.
+     * @param activation Activation function to use.
+     */
+    public FlatNeuralNetwork(int[] layersCount, DNA dna, Activation activation) {
+        this.activation = activation;
+        layers = new float[layersCount.length][];
+        int weightCount = 0;
+        for (int i = 0; i < layers.length; i++) {
+            layers[i] = new float[layersCount[i] + ((i+1 == layers.length)?0:1)];
+            layers[i][0] = 1;
+            if (i > 0) weightCount += layers[i-1].length*layersCount[i];
+        }
+
+        weights = new float[weightCount];
+        for (int i = 0; i < weights.length; i++) weights[i] = (float)dna.getGene(i)/Byte.MAX_VALUE;
+    }
+
+    /**
+     * Sets activation function used by the network.
+     * @param activation Activation function to use.
+     */
+    public void setActivation(Activation activation) {
+        this.activation = activation;
+    }
+
+    /**
+     * Calculates network output based on input (given as first layer). 
+     * Uses matrixXvector multiplication to go through the layers.
+     * @param input Input data to the network.
+     * @return Output of the network, i.e. last layer of neurons. Be 
+     * careful not to edit this array as it is only pointer, not copy. 
+     * The same array is returned on every call.
+     */
+    public float[] feedForward(float[] input) {
+        if (input.length != layers[0].length-1) return null;
+        System.arraycopy(input, 0, layers[0], 1, input.length);
+
+        int w = 0;
+        for (int layer = 0; layer + 1 < layers.length; layer++) {
+            float[] in = layers[layer];
+            float[] out = layers[layer+1];
+            int offset = (layer + 2 == layers.length)?0:1;
+            int outCount = out.length - offset;
+
+            for (int j = offset; j < out.length; j++) out[j] = 0;
+            for (int i = 0; i < in.length; i++) {
+                float value = in[i];
+                for (int j = 0; j < outCount; j++) out[offset + j] += weights[w + j]*value;
+                w += outCount;
+            }
+            for (int j = offset; j < out.length; j++) out[j] = activation.apply(out[j]);
+        }
+
+        return layers[layers.length - 1];
+    }
+
+    /**
+     * Calculates network output based on input and copies it into 
+     * given array.
+     * @param input Input data to the network.
+     * @param output Array to copy the output of the network into.
+     * @return The output array or null, if input has wrong length.
+     */
+    public float[] feedForward(float[] input, float[] output) {
+        float[] result = feedForward(input);
+        if (result == null) return null;
+        System.arraycopy(result, 0, output, 0, result.length);
+        return output;
+    }
+}
@@ -0,0 +1,336 @@
+package nn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only archive of notable genomes (hall of fame) in a memory-mapped
+ * file. Every record has the same size - generation (or tick), fitness
+ * and raw genes - so record n is found by multiplication and the file is
+ * mapped in segments, which always hold a whole number of records. Genes
+ * stay in the file and are copied onto the heap only for the records
+ * asked for. The heap keeps just a small index (generation and fitness,
+ * 12 bytes per record) for top-K and per-generation lookup, which is
+ * rebuilt from the file when an existing archive is opened.
+ *
+ * Generations of appended records must not decrease, so records of one
+ * generation are next to each other and can be found by binary search.
+ *
+ * The file grows by whole segments (64 MB), so while it is open it takes
+ * at least one segment on the disk, even with a single record (most
+ * file systems keep the unused part sparse). Closing cuts the file to
+ * the records actually stored, where the system allows shortening a
+ * mapped file (not on Windows).
+ *
+ * @author Jakub Medek
+ */
+public class GenomeArchive implements Closeable {
+    static final int MAGIC = 0x534E4B41;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_HEADER = 16;
+    static final long SEGMENT_SIZE = 64L << 20;
+
+    final FileChannel channel;
+    final int genesCount;
+    final int recordSize;
+    final int recordsPerSegment;
+    final MappedByteBuffer header;
+    final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    long count = 0;
+    long[] generations = new long[1024];
+    float[] fitness = new float[1024];
+
+    /**
+     * Opens an archive, a new one is made if the file does not exist.
+     * @param file Archive file.
+     * @param genesCount Number of genes of every genome.
+     * @throws IOException If the file can't be opened or holds genomes
+     * of different size.
+     */
+    public GenomeArchive(Path file, int genesCount) throws IOException {
+        this(file, genesCount, SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens an archive with given size of the segments, e.g. small ones
+     * for testing.
+     * @param file Archive file.
+     * @param genesCount Number of genes of every genome.
+     * @param segmentSize Size of the mapped segments in bytes, at least
+     * one record.
+     * @throws IOException If the file can't be opened or holds genomes
+     * of different size.
+     */
+    GenomeArchive(Path file, int genesCount, long segmentSize) throws IOException {
+        this.genesCount = genesCount;
+        recordSize = (RECORD_HEADER + genesCount + 7) & ~7;
+        recordsPerSegment = (int)Math.max(1, Math.min(Integer.MAX_VALUE/recordSize, segmentSize/recordSize));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean isNew = channel.size() == 0;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+
+        if (isNew) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(8, genesCount);
+            header.putLong(16, 0);
+            return;
+        }
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(8) != genesCount) {
+            channel.close();
+            if (header.getInt(0) != MAGIC) throw new IOException("Not a genome archive: " + file);
+            if (header.getInt(4) != VERSION) throw new IOException("Unsupported archive version " + header.getInt(4));
+            throw new IOException("Archive holds genomes with " + header.getInt(8) + " genes, not " + genesCount);
+        }
+
+        long stored = header.getLong(16);
+        for (long record = 0; record < stored; record++) {
+            ByteBuffer segment = segment(record);
+            int offset = offset(record);
+            addToIndex(segment.getLong(offset), segment.getFloat(offset + 8));
+        }
+    }
+
+    /**
+     * Returns the mapped segment holding a record, maps new segments
+     * (which makes the file longer) if needed.
+     * @param record Number of the record.
+     * @return Segment of the file.
+     * @throws IOException If mapping fails.
+     */
+    private MappedByteBuffer segment(long record) throws IOException {
+        int index = (int)(record/recordsPerSegment);
+        while (segments.size() <= index) {
+            long position = HEADER_SIZE + segments.size()*(long)recordsPerSegment*recordSize;
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, position, (long)recordsPerSegment*recordSize));
+        }
+        return segments.get(index);
+    }
+
+    /**
+     * Returns position of a record inside its segment.
+     * @param record Number of the record.
+     * @return Offset in bytes.
+     */
+    private int offset(long record) {
+        return (int)(record % recordsPerSegment)*recordSize;
+    }
+
+    /**
+     * Adds a record to the index on the heap.
+     * @param generation Generation of the record.
+     * @param value Fitness of the record.
+     */
+    private void addToIndex(long generation, float value) {
+        if (count == generations.length) {
+            generations = Arrays.copyOf(generations, generations.length*2);
+            fitness = Arrays.copyOf(fitness, fitness.length*2);
+        }
+        generations[(int)count] = generation;
+        fitness[(int)count] = value;
+        count++;
+    }
+
+    /**
+     * Appends a genome. The record is written before the count in the
+     * header, so a crash never leaves a half written record visible.
+     * @param generation Generation (or tick) the genome comes from, not
+     * smaller than the one of the last record.
+     * @param value Fitness of the genome.
+     * @param dna The genome.
+     * @return Number of the new record.
+     * @throws IOException If the file can't grow.
+     */
+    public synchronized long append(long generation, float value, DNA dna) throws IOException {
+        if (dna.getGenesCount() != genesCount) throw new IllegalArgumentException("Genome has " + dna.getGenesCount() + " genes, archive expects " + genesCount);
+        if (count > 0 && generation < generations[(int)count - 1]) throw new IllegalArgumentException("Generation " + generation + " is older than the last archived one");
+        long record = count;
+        MappedByteBuffer segment = segment(record);
+        int offset = offset(record);
+        segment.putLong(offset, generation);
+        segment.putFloat(offset + 8, value);
+        ByteBuffer genes = segment.duplicate();
+        genes.position(offset + RECORD_HEADER);
+        genes.put(dna.getGenes());
+        addToIndex(generation, value);
+        header.putLong(16, count);
+        return record;
+    }
+
+    /**
+     * Returns number of archived genomes.
+     * @return Number of records.
+     */
+    public synchronized long size() {
+        return count;
+    }
+
+    /**
+     * Returns generation of a record.
+     * @param record Number of the record.
+     * @return Generation (or tick).
+     */
+    public synchronized long getGeneration(long record) {
+        return generations[checked(record)];
+    }
+
+    /**
+     * Returns fitness of a record.
+     * @param record Number of the record.
+     * @return Fitness.
+     */
+    public synchronized float getFitness(long record) {
+        return fitness[checked(record)];
+    }
+
+    /**
+     * Copies genes of a record from the file.
+     * @param record Number of the record.
+     * @return New DNA with the archived genes.
+     * @throws IOException If mapping fails.
+     */
+    public synchronized DNA getGenome(long record) throws IOException {
+        checked(record);
+        ByteBuffer segment = segment(record).duplicate();
+        segment.position(offset(record) + RECORD_HEADER);
+        byte[] genes = new byte[genesCount];
+        segment.get(genes);
+        return new DNA(genes);
+    }
+
+    /**
+     * Checks that a record exists.
+     * @param record Number of the record.
+     * @return Number of the record as index into the index arrays.
+     */
+    private int checked(long record) {
+        if (record < 0 || record >= count) throw new IndexOutOfBoundsException("Record " + record + " of " + count);
+        return (int)record;
+    }
+
+    /**
+     * Finds records with the highest fitness. Only the index is searched
+     * (min-heap of size k), genes are not touched.
+     * @param k Number of records to find.
+     * @return Numbers of the records from the best one.
+     */
+    public synchronized long[] topK(int k) {
+        int size = (int)Math.max(0, Math.min(k, count));
+        if (size == 0) return new long[0];
+        int[] heap = new int[size];
+        int heapSize = 0;
+        for (int i = 0; i < count; i++) {
+            if (heapSize < size) {
+                heap[heapSize] = i;
+                siftUp(heap, heapSize++);
+            } else if (fitness[i] > fitness[heap[0]]) {
+                heap[0] = i;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        long[] best = new long[size];
+        for (int i = size - 1; i >= 0; i--) {
+            best[i] = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+        }
+        return best;
+    }
+
+    /**
+     * Moves the last added element of the min-heap up to its place.
+     * @param heap Heap of record numbers ordered by fitness.
+     * @param i Index of the element.
+     */
+    private void siftUp(int[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1)/2;
+            if (fitness[heap[parent]] <= fitness[heap[i]]) break;
+            swap(heap, parent, i);
+            i = parent;
+        }
+    }
+
+    /**
+     * Moves the top element of the min-heap down to its place.
+     * @param heap Heap of record numbers ordered by fitness.
+     * @param heapSize Number of elements in the heap.
+     */
+    private void siftDown(int[] heap, int heapSize) {
+        int i = 0;
+        while (true) {
+            int smallest = i;
+            int left = 2*i + 1, right = left + 1;
+            if (left < heapSize && fitness[heap[left]] < fitness[heap[smallest]]) smallest = left;
+            if (right < heapSize && fitness[heap[right]] < fitness[heap[smallest]]) smallest = right;
+            if (smallest == i) return;
+            swap(heap, i, smallest);
+            i = smallest;
+        }
+    }
+
+    /**
+     * Swaps two elements of an array.
+     * @param array The array.
+     * @param i Index of the first element.
+     * @param j Index of the second element.
+     */
+    private static void swap(int[] array, int i, int j) {
+        int temporary = array[i];
+        array[i] = array[j];
+        array[j] = temporary;
+    }
+
+    /**
+     * Finds records of one generation (binary search in the index).
+     * @param generation Generation to find.
+     * @return Numbers of the first record of the generation (inclusive)
+     * and of the first record after it (exclusive), equal if there are none.
+     */
+    public synchronized long[] generationRange(long generation) {
+        return new long[]{lowerBound(generation), lowerBound(generation + 1)};
+    }
+
+    /**
+     * Finds the first record with generation at least the given one.
+     * @param generation Generation to find.
+     * @return Number of the record, size of the archive if there is none.
+     */
+    private long lowerBound(long generation) {
+        int low = 0, high = (int)count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (generations[middle] < generation) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Writes all changes to the disk, cuts the unused end of the last
+     * segment (if the system allows it) and closes the file.
+     * @throws IOException If closing fails.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (MappedByteBuffer segment : segments) segment.force();
+        header.force();
+        try {
+            channel.truncate(HEADER_SIZE + count*recordSize);
+        } catch (IOException e) {
+            // mapped files can't be shortened on some systems, the space stays unused
+        }
+        channel.close();
+    }
+}
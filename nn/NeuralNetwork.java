@@ -1,5 +1,7 @@
 package nn;
 
+import util.Rng;
+
 /**
  * Class, which makes a neural network. It can calculate its output based 
  * on weights and input. Weights are generated randomly.
@@ -21,8 +23,9 @@ public class NeuralNetwork {
      * @param layersCount An array to specify the NN. Length of the array 
      * means number of layers and each number means number of neurons in 
      * that layer (plus bias, constructor adds it automatically).
+     * @param rng Random generator for the weights.
      */
-    public NeuralNetwork(int[] layersCount) {
+    public NeuralNetwork(int[] layersCount, Rng rng) {
         layers = new float[layersCount.length][];
         for (int i = 0; i < layers.length; i++) {
             layers[i] = new float[layersCount[i] + ((i+1 == layers.length)?0:1)];
@@ -36,7 +39,7 @@ public class NeuralNetwork {
         for (float[][] matrix : weights) {
             for (float[] vector : matrix) {
                 for (int i = 0; i < vector.length; i++) {
-                    vector[i] = (float)Math.random()*2-1;
+                    vector[i] = rng.nextFloat()*2-1;
                 }
             }
         }
@@ -89,7 +92,7 @@ public class NeuralNetwork {
         for (float[][] matrix : weights) {
             for (float[] vector : matrix) {
                 for (int i = 0; i < vector.length; i++) {
-                    vector[i] = (float)dna.genes[index++]/Byte.MAX_VALUE;
+                    vector[i] = (float)dna.getGene(index++)/Byte.MAX_VALUE;
                 }
             }
         }
@@ -0,0 +1,156 @@
+package nn;
+
+/**
+ * Class which evaluates neural networks of a whole population at once.
+ * All the networks share the same topology, so weights of all of them
+ * are packed into one flat array (network after network) and neurons
+ * of all of them into another one. Forward pass of a range of networks
+ * is then one loop over contiguous memory without any allocation.
+ *
+ * @author Jakub Medek
+ */
+public class PopulationNetwork {
+    final int[] layersCount;
+    final int[] layerStart;
+    final int weightStride, neuronStride;
+    final int population;
+
+    /**
+     * Weights of all networks. Weights of one network are stored layer
+     * after layer, each layer as matrix NxM (input neuron x output neuron),
+     * same as in NeuralNetwork.
+     */
+    final float[] weights;
+
+    /**
+     * Neurons of all networks (including bias neurons), network after
+     * network. Input of network is written to its first layer.
+     */
+    final float[] neurons;
+
+    Activation activation = Activation.EXACT;
+
+    /**
+     * Makes networks for the whole population. It takes care of bias
+     * automaticly (provide the neuron count without bias).
+     * @param layersCount An array to specify the NN. Length of the array
+     * means number of layers and each number means number of neurons in
+     * that layer (plus bias, constructor adds it automatically).
+     * @param population Number of networks.
+     */
+    public PopulationNetwork(int[] layersCount, int population) {
+        this.layersCount = layersCount.clone();
+        this.population = population;
+
+        layerStart = new int[layersCount.length + 1];
+        int weightCount = 0;
+        for (int i = 0; i < layersCount.length; i++) {
+            layerStart[i+1] = layerStart[i] + layerSize(i);
+            if (i + 1 < layersCount.length) weightCount += layerSize(i)*layersCount[i+1];
+        }
+        weightStride = weightCount;
+        neuronStride = layerStart[layersCount.length];
+
+        weights = new float[population*weightStride];
+        neurons = new float[population*neuronStride];
+        for (int network = 0; network < population; network++) {
+            for (int i = 0; i + 1 < layersCount.length; i++) neurons[network*neuronStride + layerStart[i]] = 1;
+        }
+    }
+
+    /**
+     * Returns number of neurons in a layer including the bias neuron
+     * (output layer has no bias).
+     * @param layer Index of the layer.
+     * @return Number of neurons.
+     */
+    private int layerSize(int layer) {
+        return layersCount[layer] + ((layer+1 == layersCount.length)?0:1);
+    }
+
+    /**
+     * Sets activation function used by all the networks.
+     * @param activation Activation function to use.
+     */
+    public void setActivation(Activation activation) {
+        this.activation = activation;
+    }
+
+    /**
+     * Sets weights of one network from DNA, the same way as
+     * NeuralNetwork does it.
+     * @param network Index of the network.
+     * @param dna DNA object, which holds genes in array of bytes.
+     */
+    public void setWeights(int network, DNA dna) {
+        int offset = network*weightStride;
+        for (int i = 0; i < weightStride; i++) weights[offset + i] = (float)dna.getGene(i)/Byte.MAX_VALUE;
+    }
+
+    /**
+     * Copies input of one network into its first layer.
+     * @param network Index of the network.
+     * @param input Input data to the network.
+     */
+    public void setInput(int network, float[] input) {
+        System.arraycopy(input, 0, neurons, network*neuronStride + 1, layersCount[0]);
+    }
+
+    /**
+     * Calculates output of networks in given range. Networks are
+     * independent, so different ranges can be calculated at the same time.
+     * @param from Index of first network (inclusive).
+     * @param to Index of last network (exclusive).
+     */
+    public void feedForward(int from, int to) {
+        int lastLayer = layersCount.length - 1;
+        Activation activation = this.activation;
+        for (int network = from; network < to; network++) {
+            int w = network*weightStride;
+            int base = network*neuronStride;
+            for (int layer = 0; layer < lastLayer; layer++) {
+                int in = base + layerStart[layer];
+                int inCount = layerSize(layer);
+                int out = base + layerStart[layer+1] + ((layer+1 == lastLayer)?0:1);
+                int outCount = layersCount[layer+1];
+
+                for (int j = 0; j < outCount; j++) neurons[out + j] = 0;
+                for (int i = 0; i < inCount; i++) {
+                    float value = neurons[in + i];
+                    for (int j = 0; j < outCount; j++) neurons[out + j] += weights[w + j]*value;
+                    w += outCount;
+                }
+                for (int j = 0; j < outCount; j++) neurons[out + j] = activation.apply(neurons[out + j]);
+            }
+        }
+    }
+
+    /**
+     * Returns one output value of a network.
+     * @param network Index of the network.
+     * @param output Index of the output neuron.
+     * @return Output value.
+     */
+    public float getOutput(int network, int output) {
+        return neurons[network*neuronStride + layerStart[layersCount.length - 1] + output];
+    }
+
+    /**
+     * Copies all neurons of one network into 2D array of layers in the
+     * same shape as NeuralNetwork.layers, e.g. for visualization.
+     * @param network Index of the network.
+     * @param layers Array to copy neurons into.
+     */
+    public void copyLayers(int network, float[][] layers) {
+        int base = network*neuronStride;
+        for (int i = 0; i < layers.length; i++) System.arraycopy(neurons, base + layerStart[i], layers[i], 0, layerSize(i));
+    }
+
+    /**
+     * Returns number of networks.
+     * @return Number of networks.
+     */
+    public int getPopulation() {
+        return population;
+    }
+}
@@ -0,0 +1,199 @@
+package snakes;
+
+import java.util.Arrays;
+import processing.core.PApplet;
+
+/**
+ * Class which describes walls of the arena analytically - the rectangular
+ * border and optional polygonal obstacles - as a list of line segments.
+ * Collisions are checked as distance from segments and wall vision
+ * intersects the borders of vision sectors with the segments, so the
+ * cost depends only on number of segments, not on size of the arena.
+ *
+ * @author Jakub Medek
+ */
+public class Arena {
+    final float width, height;
+
+    /**
+     * Segments stored as x1, y1, x2, y2 one after another.
+     */
+    float[] segments = new float[0];
+    int segmentCount = 0;
+
+    /**
+     * Constructor, which makes an arena with rectangular border.
+     * @param width Width of the arena.
+     * @param height Height of the arena.
+     */
+    public Arena(float width, float height) {
+        this.width = width;
+        this.height = height;
+        addSegment(0, 0, width, 0);
+        addSegment(width, 0, width, height);
+        addSegment(width, height, 0, height);
+        addSegment(0, height, 0, 0);
+    }
+
+    /**
+     * Adds a closed polygonal obstacle.
+     * @param points Coordinates of vertices of the polygon as x1, y1, x2,
+     * y2, ... The last vertex gets connected with the first one.
+     */
+    public void addObstacle(float... points) {
+        int vertices = points.length/2;
+        for (int i = 0; i < vertices; i++) {
+            int j = (i + 1) % vertices;
+            addSegment(points[2*i], points[2*i+1], points[2*j], points[2*j+1]);
+        }
+    }
+
+    /**
+     * Adds one wall segment.
+     * @param x1 X coordinate of the first end.
+     * @param y1 Y coordinate of the first end.
+     * @param x2 X coordinate of the second end.
+     * @param y2 Y coordinate of the second end.
+     */
+    void addSegment(float x1, float y1, float x2, float y2) {
+        if (segments.length < (segmentCount + 1)*4) segments = Arrays.copyOf(segments, Math.max(16, segments.length*2));
+        int i = segmentCount*4;
+        segments[i] = x1;
+        segments[i+1] = y1;
+        segments[i+2] = x2;
+        segments[i+3] = y2;
+        segmentCount++;
+    }
+
+    /**
+     * Checks if a circle touches any wall.
+     * @param x X coordinate of the center.
+     * @param y Y coordinate of the center.
+     * @param radius Radius of the circle.
+     * @return True, if some wall is closer than radius.
+     */
+    public boolean collides(float x, float y, float radius) {
+        if (x < radius || y < radius || x > width - radius || y > height - radius) return true;
+        for (int i = 4; i < segmentCount; i++) {
+            if (distanceToSegment(i, x, y) < radius) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns distance of a point from a segment.
+     * @param segment Index of the segment.
+     * @param x X coordinate of the point.
+     * @param y Y coordinate of the point.
+     * @return Distance.
+     */
+    private float distanceToSegment(int segment, float x, float y) {
+        int i = segment*4;
+        float ax = segments[i], ay = segments[i+1];
+        float ex = segments[i+2] - ax, ey = segments[i+3] - ay;
+        float lengthSq = ex*ex + ey*ey;
+        float t = (lengthSq == 0) ? 0 : ((x - ax)*ex + (y - ay)*ey)/lengthSq;
+        t = Math.max(0, Math.min(1, t));
+        float dx = ax + t*ex - x, dy = ay + t*ey - y;
+        return (float)Math.sqrt(dx*dx + dy*dy);
+    }
+
+    /**
+     * Fills the wall channel of vision. For every sector it finds the
+     * nearest point of any wall inside the sector.
+     * @param vision Vision to fill, already started for the head.
+     */
+    public void wallVision(Vision vision) {
+        for (int sector = 0; sector < Vision.SECTORS; sector++) {
+            float nearest = vision.range;
+            for (int segment = 0; segment < segmentCount; segment++) {
+                nearest = Math.min(nearest, nearestInSector(segment, vision.headX, vision.headY, vision.directionX, vision.directionY, sector));
+            }
+            if (nearest < vision.range) vision.offer(Vision.WALLS, sector, nearest*nearest);
+        }
+    }
+
+    /**
+     * Finds the nearest point of a segment inside one vision sector. The
+     * nearest point is either an end of the segment, an intersection with
+     * a border of the sector or the foot of the perpendicular from the head.
+     * @param segment Index of the segment.
+     * @param x X coordinate of the head.
+     * @param y Y coordinate of the head.
+     * @param directionX X coordinates of directions of sector borders.
+     * @param directionY Y coordinates of directions of sector borders.
+     * @param sector Index of the sector.
+     * @return Distance of the nearest point, infinity if the segment is
+     * not in the sector.
+     */
+    private float nearestInSector(int segment, float x, float y, float[] directionX, float[] directionY, int sector) {
+        int i = segment*4;
+        float ax = segments[i] - x, ay = segments[i+1] - y;
+        float bx = segments[i+2] - x, by = segments[i+3] - y;
+        float ex = bx - ax, ey = by - ay;
+        float nearest = Float.POSITIVE_INFINITY;
+
+        if (inSector(ax, ay, directionX, directionY, sector)) nearest = Math.min(nearest, length(ax, ay));
+        if (inSector(bx, by, directionX, directionY, sector)) nearest = Math.min(nearest, length(bx, by));
+
+        for (int border = sector; border <= sector + 1; border++) {
+            float dx = directionX[border], dy = directionY[border];
+            float denominator = dx*ey - dy*ex;
+            if (denominator == 0) continue;
+            float t = (ax*ey - ay*ex)/denominator;
+            float s = (ax*dy - ay*dx)/denominator;
+            if (t >= 0 && s >= 0 && s <= 1) nearest = Math.min(nearest, t);
+        }
+
+        float lengthSq = ex*ex + ey*ey;
+        if (lengthSq > 0) {
+            float t = -(ax*ex + ay*ey)/lengthSq;
+            if (t > 0 && t < 1) {
+                float px = ax + t*ex, py = ay + t*ey;
+                if (inSector(px, py, directionX, directionY, sector)) nearest = Math.min(nearest, length(px, py));
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Checks if a vector (relative to the head) points into a sector,
+     * using signs of cross products with the sector borders.
+     * @param px X coordinate of the vector.
+     * @param py Y coordinate of the vector.
+     * @param directionX X coordinates of directions of sector borders.
+     * @param directionY Y coordinates of directions of sector borders.
+     * @param sector Index of the sector.
+     * @return True, if the vector is inside the sector.
+     */
+    private static boolean inSector(float px, float py, float[] directionX, float[] directionY, int sector) {
+        if (px == 0 && py == 0) return false;
+        float fromFirst = directionX[sector]*py - directionY[sector]*px;
+        float fromSecond = directionX[sector+1]*py - directionY[sector+1]*px;
+        return fromFirst >= 0 && fromSecond < 0;
+    }
+
+    /**
+     * Returns length of a vector.
+     * @param x X coordinate of the vector.
+     * @param y Y coordinate of the vector.
+     * @return Length of the vector.
+     */
+    private static float length(float x, float y) {
+        return (float)Math.sqrt(x*x + y*y);
+    }
+
+    /**
+     * Displays the obstacles in world coordinates, so the applet has to
+     * be already transformed (e.g. by the camera). The rectangular border
+     * from (0, 0) to (width, height) is not drawn here, the caller draws
+     * it in its own style.
+     * @param applet Applet to display the obstacles.
+     */
+    public void display(PApplet applet) {
+        applet.stroke(255);
+        for (int i = 4; i < segmentCount; i++) {
+            applet.line(segments[i*4], segments[i*4+1], segments[i*4+2], segments[i*4+3]);
+        }
+    }
+}
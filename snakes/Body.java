@@ -0,0 +1,219 @@
+package snakes;
+
+import java.util.Arrays;
+
+/**
+ * Class which holds positions of body parts of one snake. Coordinates 
+ * are stored in two parallel float arrays (the head is at index 0), so 
+ * moving, collisions and drawing go through contiguous memory and no 
+ * object is made per body part. Arrays grow by doubling when the snake 
+ * eats.
+ * 
+ * Parts are also grouped into blocks of BLOCK consecutive parts and 
+ * every block keeps a bounding box, which is updated while the body 
+ * moves. Collisions and vision look at a block's parts only if its box 
+ * is close enough, so long snakes mostly cost one box per BLOCK parts.
+ * 
+ * @author Jakub Medek
+ */
+public class Body {
+    /**
+     * Number of parts in one block, a power of two.
+     */
+    public static final int BLOCK = 16;
+    static final int BLOCK_SHIFT = 4;
+
+    float[] x;
+    float[] y;
+    int size = 0;
+
+    /**
+     * Bounding boxes of the blocks - minX, minY, maxX, maxY of every block.
+     */
+    float[] bounds;
+
+    /**
+     * Constructor, which makes an empty body.
+     * @param capacity Initial number of body parts, which fit into the 
+     * arrays.
+     */
+    public Body(int capacity) {
+        x = new float[Math.max(1, capacity)];
+        y = new float[Math.max(1, capacity)];
+        bounds = new float[4*blocksFor(x.length)];
+    }
+
+    /**
+     * Adds a body part at the end.
+     * @param partX X coordinate of the part.
+     * @param partY Y coordinate of the part.
+     */
+    public void add(float partX, float partY) {
+        if (size == x.length) {
+            x = Arrays.copyOf(x, size*2);
+            y = Arrays.copyOf(y, size*2);
+            bounds = Arrays.copyOf(bounds, 4*blocksFor(x.length));
+        }
+        x[size] = partX;
+        y[size] = partY;
+        int block = 4*(size >> BLOCK_SHIFT);
+        if ((size & (BLOCK - 1)) == 0) {
+            bounds[block] = bounds[block+2] = partX;
+            bounds[block+1] = bounds[block+3] = partY;
+        } else {
+            bounds[block] = Math.min(bounds[block], partX);
+            bounds[block+1] = Math.min(bounds[block+1], partY);
+            bounds[block+2] = Math.max(bounds[block+2], partX);
+            bounds[block+3] = Math.max(bounds[block+3], partY);
+        }
+        size++;
+    }
+
+    /**
+     * Returns number of body parts.
+     * @return Number of body parts.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns number of blocks of body parts.
+     * @return Number of blocks.
+     */
+    public int blockCount() {
+        return blocksFor(size);
+    }
+
+    /**
+     * Returns index of the first part of a block.
+     * @param block Index of the block.
+     * @return Index of the part.
+     */
+    public int blockStart(int block) {
+        return block << BLOCK_SHIFT;
+    }
+
+    /**
+     * Returns index after the last part of a block.
+     * @param block Index of the block.
+     * @return Index of the part.
+     */
+    public int blockEnd(int block) {
+        return Math.min(size, (block + 1) << BLOCK_SHIFT);
+    }
+
+    /**
+     * Returns squared distance from a point to the bounding box of a
+     * block. No part of the block is nearer (squared distances of the
+     * parts computed as dx*dx + dy*dy are never smaller).
+     * @param block Index of the block.
+     * @param pointX X coordinate of the point.
+     * @param pointY Y coordinate of the point.
+     * @return Squared distance, 0 if the point is inside of the box.
+     */
+    public float blockDistanceSq(int block, float pointX, float pointY) {
+        float dx = Math.max(0, Math.max(bounds[4*block] - pointX, pointX - bounds[4*block+2]));
+        float dy = Math.max(0, Math.max(bounds[4*block+1] - pointY, pointY - bounds[4*block+3]));
+        return dx*dx + dy*dy;
+    }
+
+    /**
+     * Returns x coordinate of a body part.
+     * @param i Index of the part (0 is the head).
+     * @return X coordinate.
+     */
+    public float x(int i) {
+        return x[i];
+    }
+
+    /**
+     * Returns y coordinate of a body part.
+     * @param i Index of the part (0 is the head).
+     * @return Y coordinate.
+     */
+    public float y(int i) {
+        return y[i];
+    }
+
+    /**
+     * Moves the head by given vector and every other part towards the 
+     * previous one, so that they stay given distance apart. Works in place
+     * and updates bounding boxes of the blocks on the way.
+     * @param dx Movement of the head in x.
+     * @param dy Movement of the head in y.
+     * @param distance Distance kept between neighbouring parts.
+     */
+    public void follow(float dx, float dy, float distance) {
+        x[0] += dx;
+        y[0] += dy;
+        float lastX = x[0], lastY = y[0];
+        for (int block = 0, start = 0; start < size; block++, start += BLOCK) {
+            // the head does not move in the loop, but belongs to the first block
+            float minX = x[start], minY = y[start], maxX = x[start], maxY = y[start];
+            if (start > 0) {
+                minX = minY = Float.POSITIVE_INFINITY;
+                maxX = maxY = Float.NEGATIVE_INFINITY;
+            }
+            int end = Math.min(size, start + BLOCK);
+            for (int i = Math.max(1, start); i < end; i++) {
+                float deltaX = lastX - x[i], deltaY = lastY - y[i];
+                float length = (float)Math.sqrt(deltaX*deltaX + deltaY*deltaY);
+                if (length != 0) {
+                    float factor = (length - distance)/length;
+                    x[i] += deltaX*factor;
+                    y[i] += deltaY*factor;
+                }
+                lastX = x[i];
+                lastY = y[i];
+                minX = Math.min(minX, lastX);
+                minY = Math.min(minY, lastY);
+                maxX = Math.max(maxX, lastX);
+                maxY = Math.max(maxY, lastY);
+            }
+            setBounds(block, minX, minY, maxX, maxY);
+        }
+    }
+
+    /**
+     * Computes bounding boxes of all blocks again from the positions of
+     * the parts, e.g. after the arrays were filled directly.
+     */
+    void recomputeBounds() {
+        for (int block = 0; block < blockCount(); block++) {
+            float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+            float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+            for (int i = blockStart(block); i < blockEnd(block); i++) {
+                minX = Math.min(minX, x[i]);
+                minY = Math.min(minY, y[i]);
+                maxX = Math.max(maxX, x[i]);
+                maxY = Math.max(maxY, y[i]);
+            }
+            setBounds(block, minX, minY, maxX, maxY);
+        }
+    }
+
+    /**
+     * Sets bounding box of a block.
+     * @param block Index of the block.
+     * @param minX Minimum x coordinate.
+     * @param minY Minimum y coordinate.
+     * @param maxX Maximum x coordinate.
+     * @param maxY Maximum y coordinate.
+     */
+    private void setBounds(int block, float minX, float minY, float maxX, float maxY) {
+        bounds[4*block] = minX;
+        bounds[4*block+1] = minY;
+        bounds[4*block+2] = maxX;
+        bounds[4*block+3] = maxY;
+    }
+
+    /**
+     * Returns number of blocks needed for given number of parts.
+     * @param parts Number of parts.
+     * @return Number of blocks.
+     */
+    private static int blocksFor(int parts) {
+        return (parts + BLOCK - 1) >> BLOCK_SHIFT;
+    }
+}
@@ -1,49 +1,63 @@
 package snakes;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
-import nn.DNA;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import metrics.DeathCause;
+import metrics.Metrics;
+import metrics.Phase;
+import metrics.Sample;
+import visualization.Camera;
 import visualization.Graph;
 import visualization.NetworkVisualization;
 import processing.core.PApplet;
-import processing.core.PVector;
-import static processing.core.PApplet.dist;
-import static processing.core.PApplet.max;
+import util.Rng;
 import static processing.core.PConstants.CENTER;
 import static processing.core.PConstants.LEFT;
 import static processing.core.PConstants.TOP;
 
 /**
- * Class which handles the whole simulation. It takes care of the snakes
- * and food. It also displays the food and checks for collisions between
- * food and snakes.
+ * Class which displays the simulation. The simulation itself is handled 
+ * by World, which runs on its own thread (SimulationLoop) at adjustable 
+ * speed. Box controls it, displays the snakes and food and handles 
+ * the information shown on top of it. Everything is drawn from snapshots
+ * published by the simulation thread after ticks, so drawing never 
+ * waits for the simulation and the simulation never waits for drawing.
+ * The world can be bigger than the window, it is looked at through 
+ * a camera, which can be moved by dragging the mouse and zoomed by 
+ * the mouse wheel.
  * 
  * @author Jakub Medek
  */
 public class Box {
-    Food[] food;
-    List<PVector> restrictions = new ArrayList<>();
-    Snake[] snakes;
-    NetworkVisualization networkVisualization;
-    float foodSize;
-    float padding;
+    /**
+     * Number of ticks between values of the graph (one second at speed 1).
+     */
+    static final int GRAPH_SAMPLE_TICKS = 60;
 
-    float snakeBodySize;
-    float snakeMaxHealth;
-    float snakeHealthFromMeal;
+    World world;
+    SimulationLoop simulation;
+    SnapshotPublisher snapshots;
+    SnapshotRenderer renderer;
+    Camera camera;
+    NetworkVisualization networkVisualization;
 
-    int bestSnakeId = 0;
     boolean toggleShowNN;
     boolean toggleShowFramerate;
     boolean toggleShowGraph;
-    boolean running;
+    boolean toggleShowMetrics;
 
     Graph graph;
     
     PApplet applet;
 
+    ExecutorService checkpointWriter;
+    Future<?> lastCheckpoint = CompletableFuture.completedFuture(null);
+
     /**
      * Constructor - sets the simulation enviroment
      * @param snakeCount Total number of snakes
@@ -58,206 +72,208 @@ public class Box {
      * @param applet Applet to display and get information about the scene.
      */
     public Box(int snakeCount, int maxFood, float foodSize, float bodySize, float padding, float snakeMaxHealth, float snakeHealthFromMeal, PApplet applet) {
+        this(snakeCount, maxFood, foodSize, bodySize, padding, snakeMaxHealth, snakeHealthFromMeal, applet.width, applet.height, applet);
+    }
+
+    /**
+     * Constructor - sets the simulation enviroment with a world of any 
+     * size, independent of the window.
+     * @param snakeCount Total number of snakes
+     * @param maxFood Maximum number of food displayed
+     * @param foodSize Size of food - used for drawing
+     * @param bodySize Size of snake parts - used for drawing
+     * @param padding Padding from the sides of the world - restricts area 
+     * where food and snakes are generated
+     * @param snakeMaxHealth Maximum health of a snake. It gets assigned to a 
+     * health variable and is reduced by one every frame.
+     * @param snakeHealthFromMeal Extra health given by eating one meal.
+     * @param worldWidth Width of the world.
+     * @param worldHeight Height of the world.
+     * @param applet Applet to display and get information about the scene.
+     */
+    public Box(int snakeCount, int maxFood, float foodSize, float bodySize, float padding, float snakeMaxHealth, float snakeHealthFromMeal, float worldWidth, float worldHeight, PApplet applet) {
+        this(new World(snakeCount, maxFood, foodSize, bodySize, padding, snakeMaxHealth, snakeHealthFromMeal, worldWidth, worldHeight, new Rng(System.nanoTime())), applet);
+    }
+
+    /**
+     * Constructor - displays an already existing simulation.
+     * @param world Simulation to display and control.
+     * @param applet Applet to display and get information about the scene.
+     */
+    public Box(World world, PApplet applet) {
+        this(world, applet, makeGraph(applet));
+    }
+
+    /**
+     * Constructor - displays an already existing simulation with an 
+     * already existing graph (e.g. both loaded from a checkpoint).
+     * @param world Simulation to display and control.
+     * @param applet Applet to display and get information about the scene.
+     * @param graph Graph of the best fitness.
+     */
+    private Box(World world, PApplet applet, Graph graph) {
         this.applet = applet;
-        
-        snakes = new Snake[snakeCount];
-        for (int i = 0; i < snakes.length; i++) snakes[i] = new Snake(bodySize, padding, snakeMaxHealth, snakeHealthFromMeal, applet);
-        this.foodSize = foodSize;
-        this.padding = padding;
-        for (int i = 0; i <= applet.width/10; i++) {
-            restrictions.add(new PVector(i*10, 0));
-            restrictions.add(new PVector(i*10, applet.height));
-        }
-        for (int i = 1; i < applet.height/10; i++) {
-            restrictions.add(new PVector(0, i*10));
-            restrictions.add(new PVector(applet.width, i*10));
-        }
-        this.snakeBodySize = bodySize;
-        this.snakeMaxHealth = snakeMaxHealth;
-        this.snakeHealthFromMeal = snakeHealthFromMeal;
-        food = new Food[maxFood];
-        for (int i = 0; i < food.length; i++) food[i] = new Food(new PVector(applet.random(applet.width-2*padding)+padding, applet.random(applet.height-2*padding)+padding), foodSize);
+        this.world = world;
+
         networkVisualization = new NetworkVisualization(30);
         toggleShowNN = false;
-        running = true;
         toggleShowFramerate = false;
         toggleShowGraph = true;
 
-        graph = new Graph(0, applet.height*0.8f, applet.width*0.1f, applet.width*0.1f, applet.width/10);
+        this.graph = graph;
 
-        Timer timer = new Timer();
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                graph.addValue(snakes[bestSnakeId].getFitness());
-            }
-        }, 1000, 1000);
+        renderer = new SnapshotRenderer();
+        camera = new Camera(world.getWidth(), world.getHeight(), applet.width, applet.height);
+        snapshots = new SnapshotPublisher();
+        snapshots.publish(world);
+
+        simulation = new SimulationLoop(world);
+        simulation.addTickListener(w -> {
+            if (w.getTick() % GRAPH_SAMPLE_TICKS == 0) graph.addValue(w.getBestSnake().getFitness());
+            snapshots.publish(w);
+        });
     }
 
     /**
-     * Function which handles all the tasks with food.
+     * Starts the simulation thread.
      */
-    public void manageFood() {
-        if (running) checkSnakeFoodCollision();
-        updateFood();
-        displayFood();
+    public void start() {
+        simulation.start();
     }
 
     /**
-     * Function to check if any of the snakes has collided with food, which 
-     * results in eating the food.
+     * Stops the simulation thread, e.g. before saving the last checkpoint.
+     * @throws InterruptedException If waiting for the thread was interrupted.
      */
-    private void checkSnakeFoodCollision() {
-        for (Snake snake : snakes) {
-            PVector snakePosition = snake.body.get(0);
-            for (int i = 0; i < food.length; i++) {
-                PVector mealPosition = food[i].position;
-                boolean canEat = dist(snakePosition.x, snakePosition.y, mealPosition.x, mealPosition.y) < (snake.bodySize + foodSize)*0.5;
-                if (canEat) {
-                    snake.eatFood();
-                    food[i].position = new PVector(applet.random(applet.width-2*padding)+padding, applet.random(applet.height-2*padding)+padding);
-                }
-            }
-        }
+    public void stop() throws InterruptedException {
+        simulation.stop();
     }
 
-
+    /**
+     * Returns the simulation loop, e.g. to add tick listeners to it.
+     * @return The simulation loop.
+     */
+    public SimulationLoop getSimulation() {
+        return simulation;
+    }
 
     /**
-     * Function to update position of all the food. Based on velocity.
+     * Makes the graph of the best fitness in the left bottom corner.
+     * @param applet Applet to get size of the window.
+     * @return New graph.
      */
-    private void updateFood() {
-        if (running) for (Food meal : food) meal.update(padding, applet);
+    private static Graph makeGraph(PApplet applet) {
+        return new Graph(0, applet.height*0.8f, applet.width*0.1f, applet.width*0.1f, applet.width/10);
     }
 
     /**
-     * Function to display all the food.
+     * Loads the simulation and the graph from a checkpoint.
+     * @param file Checkpoint file.
+     * @param applet Applet to display and get information about the scene.
+     * @return Box with the loaded simulation.
+     * @throws IOException If the checkpoint can't be read.
      */
-    private void displayFood() {
-        for (Food meal : food) meal.display(applet);
+    public static Box loadCheckpoint(Path file, PApplet applet) throws IOException {
+        Graph graph = makeGraph(applet);
+        World world = Checkpoint.load(file, graph);
+        return new Box(world, applet, graph);
     }
 
     /**
-     * Function which manages all the snakes - steering, moving, 
-     * displaying, checking health and collisions.
+     * Waits until the checkpoint being written (if any) is finished.
+     * @throws InterruptedException If the waiting is interrupted.
+     * @throws ExecutionException If writing the checkpoint failed.
      */
-    public void manageSnakes() {
-        if (running) {
-            float bestFitness = 0;
+    public void awaitCheckpoint() throws InterruptedException, ExecutionException {
+        lastCheckpoint.get();
+    }
 
-            for (int i = 0; i < snakes.length; i++) {
-                float actFitness = snakes[i].getFitness();
-                if (actFitness > bestFitness) {
-                    bestFitness = actFitness;
-                    bestSnakeId = i;
-                }
-            }
+    /**
+     * Saves the simulation and the graph into a checkpoint. The state is 
+     * captured right away, the file is written on a background thread. If 
+     * the previous checkpoint is still being written, nothing is done. 
+     * Has to be called between ticks - from a tick listener or when the 
+     * simulation is stopped.
+     * @param file Checkpoint file.
+     * @return Future, which is done when the file is written.
+     */
+    public Future<?> saveCheckpoint(Path file) {
+        if (!lastCheckpoint.isDone()) return lastCheckpoint;
+        if (checkpointWriter == null) {
+            checkpointWriter = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "checkpoint-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
         }
-
-        for (int i = 0; i < snakes.length; i++) {
-            Snake snake = snakes[i];
-            if (running) {
-                snake.steer(food, restrictions);
-                snake.move();
-                snake.updateHealth();
+        Checkpoint checkpoint = Checkpoint.capture(world, graph);
+        lastCheckpoint = checkpointWriter.submit(() -> {
+            try {
+                checkpoint.write(file);
+            } catch (IOException e) {
+                System.err.println("Saving checkpoint failed: " + e);
             }
-            snake.display((i == bestSnakeId)&&(toggleShowNN), applet);
-        }
-
-        if (running) {
-            checkSnakeWallCollision();
-            checkSnakeBodyCollision();
-            checkSnakeAlive();
-        }
+        });
+        return lastCheckpoint;
     }
 
     /**
-     * Checks collisions between snake and wall. When snake collides into 
-     * wall, snake gets replaced.
+     * Returns the displayed simulation.
+     * @return The world.
      */
-    private void checkSnakeWallCollision() {
-        for (int i = 0; i < snakes.length; i++) {
-            PVector head = snakes[i].body.get(0);
-            for (PVector restriction : restrictions) {
-                float distance = dist(head.x, head.y, restriction.x, restriction.y);
-                if (distance < snakes[i].bodySize*0.5) {
-                    replaceSnake(i);
-                }
-            }
-        }
+    public World getWorld() {
+        return world;
     }
 
     /**
-     * Checks collision between snake and its body. When snake collides into 
-     * its body, snake gets replaced. 
+     * Function which displays the whole simulation and the information on 
+     * top of it. Everything is drawn from the newest snapshot, so it is 
+     * all from the same tick. Obstacles are drawn from the world itself, 
+     * because they never change while the simulation runs.
      */
-    private void checkSnakeBodyCollision() {
-        for (int i = 0; i < snakes.length; i++) {
-            List<PVector> body = snakes[i].body;
-            PVector head = body.get(0);
-            for (int j = 1; j < body.size(); j++) {
-                PVector part = body.get(j);
-                float distance = dist(head.x, head.y, part.x, part.y);
-                if (distance < snakes[i].bodySize*0.95) {
-                    replaceSnake(i);
-                }
-            }
-        }
+    public void display() {
+        WorldSnapshot snapshot = snapshots.acquire();
+        displayArena();
+        renderer.display(snapshot, camera, toggleShowNN, applet);
+        displayInfo(snapshot);
     }
 
     /**
-     * Checks if snake is alive. If not, it gets replaced.
+     * Function which displays the edges of the world and the obstacles 
+     * through the camera.
      */
-    private void checkSnakeAlive() {
-        for (int i = 0; i < snakes.length; i++) {
-            if (!snakes[i].isAlive()) {
-                replaceSnake(i);
-            }
-        }
+    private void displayArena() {
+        applet.pushMatrix();
+        applet.pushStyle();
+            camera.apply(applet);
+            applet.strokeWeight(1/camera.getZoom());
+            applet.noFill();
+            applet.stroke(80);
+            applet.rect(0, 0, world.getWidth(), world.getHeight());
+            world.arena.display(applet);
+        applet.popStyle();
+        applet.popMatrix();
     }
 
     /**
-     * Function to replace a snake, if it died. Function takes two random 
-     * snakes based on their fitness and combines their DNA together. Then 
-     * it makes another snake based on that DNA.
-     * @param id 
+     * Function which has to be called when the mouse is dragged. It moves 
+     * the camera.
+     * @param dx Movement of the mouse along X axis.
+     * @param dy Movement of the mouse along Y axis.
      */
-    private void replaceSnake(int id) {
-        float maxFitness = 0;
-        for (Snake snake : snakes) maxFitness = max(maxFitness, snake.getFitness());
-        int snakeAId = getRandomSnakeByFitness(-1);
-        int snakeBId = getRandomSnakeByFitness(snakeAId);
-        Snake snakeA = snakes[snakeAId];
-        Snake snakeB = snakes[snakeBId];
-        DNA child = snakeA.dna.crossover(snakeB.dna);
-        child.mutate(30f/maxFitness);
-
-        Snake childSnake = new Snake(snakeBodySize, padding, snakeMaxHealth, snakeHealthFromMeal, applet);
-        snakes[id] = childSnake;
+    public void mouseDragged(float dx, float dy) {
+        camera.pan(dx, dy);
     }
 
     /**
-     * Randomly selects a snake from snakes array. Random selection is 
-     * based on fitness of the snakes. Snake with higher fitness has
-     * higher chance of being selected.
-     * @param id Index of snake, which can't be picked. Used when picking 
-     * two snakes - at first you pick one snake and then the other one, but 
-     * you send index of the first one, so it cannot be picked second time.
-     * @return Id of randomly selected snake.
+     * Function which has to be called when the mouse wheel is turned. It 
+     * zooms the camera around the mouse.
+     * @param count Number of steps of the wheel, negative to zoom in.
+     * @param x X coordinate of the mouse.
+     * @param y Y coordinate of the mouse.
      */
-    private int getRandomSnakeByFitness(int id) {
-        float randomMax = 0;
-        for (int i = 0; i < snakes.length; i++) {
-            if (i != id) randomMax += snakes[i].getFitness();
-        }
-        float randomChoose = (float)Math.random()*randomMax;
-        for (int i = 0; i < snakes.length; i++) {
-            if (i != id) {
-                randomChoose -= snakes[i].getFitness();
-                if (randomChoose <= 0) return i;
-            }
-        }
-        return -1;
+    public void mouseWheel(float count, float x, float y) {
+        camera.zoom((float)Math.pow(1.1, -count), x, y);
     }
 
     /**
@@ -270,32 +286,75 @@ public class Box {
             case 'n': toggleShowNN = !toggleShowNN; break;
             case 'f': toggleShowFramerate = !toggleShowFramerate; break;
             case 'g': toggleShowGraph = !toggleShowGraph; break;
-            case ' ': running = !running; break;
+            case 'l': renderer.setLevelOfDetail(!renderer.getLevelOfDetail()); break;
+            case 'c': camera.fit(world.getWidth(), world.getHeight(), applet.width, applet.height); break;
+            case 'm':
+                toggleShowMetrics = !toggleShowMetrics;
+                simulation.lock();
+                try {
+                    if (world.getMetrics() == null) world.setMetrics(new Metrics(60, 600));
+                } finally {
+                    simulation.unlock();
+                }
+                break;
+            case '1': simulation.setSpeed(1); break;
+            case '2': simulation.setSpeed(10); break;
+            case '3': simulation.setSpeed(Float.POSITIVE_INFINITY); break;
+            case ' ': simulation.setPaused(!simulation.isPaused()); break;
         }
     }
 
     /**
      * Function, which displays additional information as graph, help, 
-     * and wheter the program is running
+     * speed and wheter the program is running
+     * @param snapshot Snapshot, which is being displayed.
      */
-    public void displayInfo() {
-        if (!running) {
+    private void displayInfo(WorldSnapshot snapshot) {
+        if (simulation.isPaused()) {
             applet.textAlign(CENTER, CENTER);
             applet.fill(255);
             applet.textSize(30);
             applet.text("Paused", applet.width/2, 30);
         }
-        if (toggleShowNN) networkVisualization.display(snakes[bestSnakeId].neuralNetwork.layers, applet);
+        if (toggleShowNN) networkVisualization.display(snapshot.getActivations(), applet);
         if (toggleShowGraph) graph.display(applet);
+        if (toggleShowMetrics) displayMetrics();
         if (toggleShowFramerate) {
             applet.textAlign(LEFT, TOP);
             applet.fill(255);
             applet.textSize(12);
-            applet.text(applet.frameRate, 0, 0);
+            float speed = simulation.getSpeed();
+            applet.text(String.format("%.0f FPS, speed %s, tick %d, %d of %d parts drawn", applet.frameRate, Float.isInfinite(speed) ? "unlimited" : String.format("%.0fx", speed), snapshot.getTick(), renderer.getDrawnCount(), snapshot.getPartCount()), 0, 0);
         }
         displayHelp();
     }
 
+    /**
+     * Function, which displays the last sample of metrics in the left 
+     * top corner.
+     */
+    private void displayMetrics() {
+        Sample sample = world.getMetrics().getLatest();
+        if (sample == null) return;
+        applet.textAlign(LEFT, TOP);
+        applet.fill(255);
+        applet.textSize(12);
+        float y = 20;
+        applet.text(String.format("%.0f ticks/s, %d alive", sample.ticksPerSecond, sample.alive), 0, y);
+        for (Phase phase : Phase.values()) {
+            y += 15;
+            applet.text(String.format("%s: %.3f ms/tick", phase.name().toLowerCase(), sample.getPhaseMillis(phase)), 0, y);
+        }
+        y += 15;
+        applet.text(String.format("fitness: min %.0f, median %.0f, p90 %.0f, max %.0f", sample.fitnessMin, sample.fitnessMedian, sample.fitnessP90, sample.fitnessMax), 0, y);
+        for (DeathCause cause : DeathCause.values()) {
+            y += 15;
+            applet.text(String.format("deaths by %s: %d", cause.name().toLowerCase(), sample.getDeaths(cause)), 0, y);
+        }
+        y += 15;
+        applet.text(String.format("allocation: %.1f MB/s", sample.allocatedBytesPerSecond/1e6), 0, y);
+    }
+
     /**
      * Function, which displays help in the right bottom corner.
      */
@@ -309,6 +368,10 @@ public class Box {
             applet.text("\"n\": Show/hide network and best snake", 0, -30);
             applet.text("\"f\": Show/hide framerate", 0, -45);
             applet.text("\"g\": Show/hide graph", 0, -60);
+            applet.text("\"m\": Show/hide metrics", 0, -75);
+            applet.text("\"1\", \"2\", \"3\": Speed 1x, 10x, unlimited", 0, -90);
+            applet.text("\"l\": Level of detail on/off", 0, -105);
+            applet.text("\"c\", drag, wheel: Show whole world, move, zoom", 0, -120);
         applet.popMatrix();
     }
 }
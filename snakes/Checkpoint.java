@@ -0,0 +1,313 @@
+package snakes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import nn.DNA;
+import util.Rng;
+import visualization.Graph;
+
+/**
+ * Binary checkpoint of the whole simulation - settings and walls of the
+ * world, state of the random generator, counters, food, every snake
+ * (genes, body, heading, health) and optionally the history of a graph.
+ * Resuming from a checkpoint continues exactly where the simulation was.
+ *
+ * Saving has two steps, so it does not stall the simulation: capture
+ * copies the changing state into a buffer (has to run between ticks) and
+ * write puts it into a file (can run on another thread). Genes make up
+ * most of the file, but DNA of a living snake never changes, so capture
+ * only keeps references to it and genes are copied straight into the
+ * file by write. The file is written next to the target and then
+ * renamed, so a crash while writing never breaks the previous checkpoint.
+ * Everything is stored as raw big-endian numbers, a snake takes about
+ * 1.1 kB (mostly genes) plus 8 bytes per body part.
+ *
+ * @author Jakub Medek
+ */
+public class Checkpoint {
+    static final int MAGIC = 0x534E4B43;
+    static final int VERSION = 2;
+    static final int WRITE_CHUNK = 1 << 16;
+
+    /**
+     * Everything except genes, ready to be written.
+     */
+    final ByteBuffer state;
+
+    /**
+     * Genes of the snakes at the moment of capture (arrays of DNA never
+     * change, so they are not copied).
+     */
+    final byte[][] genomes;
+
+    /**
+     * Constructor.
+     * @param state Captured state without genes.
+     * @param genomes Genes of the snakes.
+     */
+    private Checkpoint(ByteBuffer state, byte[][] genomes) {
+        this.state = state;
+        this.genomes = genomes;
+    }
+
+    /**
+     * Captures the state of a world (and a graph). Has to be called 
+     * between ticks, the world can continue right after it returns.
+     * @param world World to save.
+     * @param graph Graph to save, can be null.
+     * @return Checkpoint ready to be written.
+     */
+    public static Checkpoint capture(World world, Graph graph) {
+        ByteBuffer buffer = ByteBuffer.allocate(size(world, graph));
+        byte[][] genomes = new byte[world.snakes.length][];
+        buffer.putInt(MAGIC).putInt(VERSION);
+
+        FoodManager food = world.food;
+        buffer.putInt(world.snakes.length).putInt(food.size());
+        buffer.putFloat(world.foodSize).putFloat(world.snakeBodySize).putFloat(world.padding);
+        buffer.putFloat(world.snakeMaxHealth).putFloat(world.snakeHealthFromMeal);
+        buffer.putFloat(world.width).putFloat(world.height).putFloat(world.viewRange);
+        buffer.put((byte)(world.replaceDeadSnakes ? 1 : 0));
+        buffer.putLong(world.tick).putInt(world.bestSnakeId).putLong(world.random.getState());
+        buffer.put((byte)food.getDynamics().ordinal()).putLong(food.getSeasonLength());
+
+        Arena arena = world.arena;
+        buffer.putInt(arena.segmentCount - 4);
+        putFloats(buffer, arena.segments, 16, (arena.segmentCount - 4)*4);
+
+        for (int i = 0; i < food.size(); i++) {
+            buffer.putFloat(food.x[i]).putFloat(food.y[i]);
+            buffer.putFloat(food.vx[i]).putFloat(food.vy[i]);
+        }
+
+        for (int i = 0; i < genomes.length; i++) {
+            Snake snake = world.snakes[i];
+            genomes[i] = snake.dna.getGenes();
+            buffer.putInt(snake.dna.getGenesCount());
+            buffer.putFloat(snake.heading).putFloat(snake.health).putInt(snake.liveLength);
+            buffer.put((byte)(snake.dead ? 1 : 0));
+            Body body = snake.body;
+            buffer.putInt(body.size);
+            putFloats(buffer, body.x, 0, body.size);
+            putFloats(buffer, body.y, 0, body.size);
+        }
+
+        int seriesCount = (graph != null) ? graph.getSeriesCount() : 0;
+        buffer.putInt(seriesCount);
+        for (int series = 0; series < seriesCount; series++) {
+            float[] values = graph.getValues(series);
+            buffer.putInt(values.length);
+            putFloats(buffer, values, 0, values.length);
+        }
+
+        buffer.flip();
+        return new Checkpoint(buffer, genomes);
+    }
+
+    /**
+     * Returns size of a captured world in bytes (without genes).
+     * @param world World to save.
+     * @param graph Graph to save, can be null.
+     * @return Size in bytes.
+     */
+    private static int size(World world, Graph graph) {
+        // magic, version and counts, 8 floats of settings, flag, tick, best id, random state, dynamics, season
+        long size = 4*4 + 4*8 + 1 + 8 + 4 + 8 + 1 + 8;
+        size += 4 + (world.arena.segmentCount - 4)*16L;
+        size += world.food.size()*16L;
+        for (Snake snake : world.snakes) size += 4 + 4 + 4 + 4 + 1 + 4 + snake.body.size*8L;
+        size += 4;
+        if (graph != null) {
+            for (int series = 0; series < graph.getSeriesCount(); series++) size += 4 + graph.getValues(series).length*4L;
+        }
+        if (size > Integer.MAX_VALUE) throw new IllegalStateException("World is too big for one checkpoint");
+        return (int)size;
+    }
+
+    /**
+     * Writes the captured state into a file, genes go at the end. The file 
+     * is replaced only after everything is written. Can be called only 
+     * once for every capture.
+     * @param file File to write.
+     * @throws IOException If writing fails.
+     */
+    public void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (state.hasRemaining()) channel.write(state);
+            ByteBuffer chunk = ByteBuffer.allocateDirect(WRITE_CHUNK);
+            for (byte[] genes : genomes) {
+                if (chunk.remaining() < genes.length) flush(chunk, channel);
+                if (genes.length > chunk.capacity()) channel.write(ByteBuffer.wrap(genes));
+                else chunk.put(genes);
+            }
+            flush(chunk, channel);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes everything in a buffer into a channel and clears the buffer.
+     * @param chunk Buffer to write.
+     * @param channel Channel to write into.
+     * @throws IOException If writing fails.
+     */
+    private static void flush(ByteBuffer chunk, FileChannel channel) throws IOException {
+        chunk.flip();
+        while (chunk.hasRemaining()) channel.write(chunk);
+        chunk.clear();
+    }
+
+    /**
+     * Saves a world (and a graph) into a file right away.
+     * @param world World to save.
+     * @param graph Graph to save, can be null.
+     * @param file File to write.
+     * @throws IOException If writing fails.
+     */
+    public static void save(World world, Graph graph, Path file) throws IOException {
+        capture(world, graph).write(file);
+    }
+
+    /**
+     * Loads a world from a checkpoint. Threads, batched inference,
+     * activation and selection are not part of the checkpoint and have
+     * to be set again.
+     * @param file File to read.
+     * @param graph Graph to fill with the saved history, can be null.
+     * @return The loaded world.
+     * @throws IOException If reading fails or the file is not a checkpoint.
+     */
+    public static World load(Path file, Graph graph) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) throw new IOException("Checkpoint is too big");
+            buffer = ByteBuffer.allocate((int)size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {}
+        }
+        buffer.flip();
+        try {
+            return read(buffer, graph);
+        } catch (RuntimeException e) {
+            throw new IOException("Broken checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * Reads a world from a buffer holding a whole checkpoint file.
+     * @param buffer Buffer positioned at the start of the checkpoint.
+     * @param graph Graph to fill with the saved history, can be null.
+     * @return The loaded world.
+     * @throws IOException If the buffer does not hold a checkpoint.
+     */
+    public static World read(ByteBuffer buffer, Graph graph) throws IOException {
+        if (buffer.getInt() != MAGIC) throw new IOException("Not a checkpoint");
+        int version = buffer.getInt();
+        if (version < 1 || version > VERSION) throw new IOException("Unsupported checkpoint version " + version);
+
+        int snakeCount = buffer.getInt();
+        int maxFood = buffer.getInt();
+        float foodSize = buffer.getFloat(), bodySize = buffer.getFloat(), padding = buffer.getFloat();
+        float maxHealth = buffer.getFloat(), healthFromMeal = buffer.getFloat();
+        float width = buffer.getFloat(), height = buffer.getFloat(), viewRange = buffer.getFloat();
+        boolean replaceDeadSnakes = buffer.get() != 0;
+        long tick = buffer.getLong();
+        int bestSnakeId = buffer.getInt();
+        long rngState = buffer.getLong();
+        FoodDynamics dynamics = FoodDynamics.DRIFTING;
+        long seasonLength = -1;
+        if (version >= 2) {
+            dynamics = FoodDynamics.values()[buffer.get()];
+            seasonLength = buffer.getLong();
+        }
+
+        float[] obstacles = new float[buffer.getInt()*4];
+        getFloats(buffer, obstacles, obstacles.length);
+        float[] foodState = new float[maxFood*4];
+        getFloats(buffer, foodState, foodState.length);
+
+        int[] genesLengths = new int[snakeCount];
+        float[] headings = new float[snakeCount], healths = new float[snakeCount];
+        int[] liveLengths = new int[snakeCount];
+        boolean[] dead = new boolean[snakeCount];
+        Body[] bodies = new Body[snakeCount];
+        for (int i = 0; i < snakeCount; i++) {
+            genesLengths[i] = buffer.getInt();
+            headings[i] = buffer.getFloat();
+            healths[i] = buffer.getFloat();
+            liveLengths[i] = buffer.getInt();
+            dead[i] = buffer.get() != 0;
+            int parts = buffer.getInt();
+            bodies[i] = new Body(parts);
+            getFloats(buffer, bodies[i].x, parts);
+            getFloats(buffer, bodies[i].y, parts);
+            bodies[i].size = parts;
+            bodies[i].recomputeBounds();
+        }
+
+        int seriesCount = buffer.getInt();
+        for (int series = 0; series < seriesCount; series++) {
+            float[] values = new float[buffer.getInt()];
+            getFloats(buffer, values, values.length);
+            if (graph != null && series < graph.getSeriesCount()) graph.setValues(series, values);
+        }
+
+        DNA[] genomes = new DNA[snakeCount];
+        for (int i = 0; i < snakeCount; i++) {
+            byte[] genes = new byte[genesLengths[i]];
+            buffer.get(genes);
+            genomes[i] = new DNA(genes);
+        }
+
+        World world = new World(genomes, maxFood, foodSize, bodySize, padding, maxHealth, healthFromMeal, width, height, new Rng(rngState));
+        world.setViewRange(viewRange);
+        world.setReplaceDeadSnakes(replaceDeadSnakes);
+        world.tick = tick;
+        world.bestSnakeId = bestSnakeId;
+        for (int i = 0; i < obstacles.length; i += 4) world.arena.addSegment(obstacles[i], obstacles[i+1], obstacles[i+2], obstacles[i+3]);
+        world.setFoodDynamics(dynamics);
+        if (seasonLength > 0) world.setSeasonLength(seasonLength);
+        for (int i = 0; i < maxFood; i++) world.food.set(i, foodState[4*i], foodState[4*i+1], foodState[4*i+2], foodState[4*i+3]);
+        for (int i = 0; i < snakeCount; i++) {
+            Snake snake = world.snakes[i];
+            snake.heading = headings[i];
+            snake.health = healths[i];
+            snake.liveLength = liveLengths[i];
+            snake.dead = dead[i];
+            snake.body = bodies[i];
+        }
+        world.food.tick = tick;
+        world.random.setState(rngState);
+        world.setSelection(world.selection);
+        return world;
+    }
+
+    /**
+     * Puts a part of a float array into a buffer at once.
+     * @param buffer Buffer to write into.
+     * @param values Array of values.
+     * @param from Index of the first value.
+     * @param count Number of values.
+     */
+    private static void putFloats(ByteBuffer buffer, float[] values, int from, int count) {
+        buffer.asFloatBuffer().put(values, from, count);
+        buffer.position(buffer.position() + count*4);
+    }
+
+    /**
+     * Reads floats from a buffer into an array at once.
+     * @param buffer Buffer to read from.
+     * @param values Array to fill from the start.
+     * @param count Number of values.
+     */
+    private static void getFloats(ByteBuffer buffer, float[] values, int count) {
+        buffer.asFloatBuffer().get(values, 0, count);
+        buffer.position(buffer.position() + count*4);
+    }
+}
@@ -0,0 +1,23 @@
+package snakes;
+
+/**
+ * How food behaves in the arena.
+ *
+ * @author Jakub Medek
+ */
+public enum FoodDynamics {
+    /**
+     * Food stays where it appeared, eaten food appears anywhere.
+     */
+    STATIC,
+    /**
+     * Food moves at constant speed and bounces off the edges of the arena
+     * (the original behaviour), eaten food appears anywhere.
+     */
+    DRIFTING,
+    /**
+     * Food stays where it appeared, but eaten food appears more likely in
+     * a fertile band, which sweeps across the arena once per season.
+     */
+    SEASONAL
+}
@@ -0,0 +1,345 @@
+package snakes;
+
+import util.Rng;
+import static processing.core.PConstants.TWO_PI;
+
+/**
+ * All the food of a world. Positions and velocities are kept in plain
+ * arrays (like Body) and every item is also in a spatial grid, so food
+ * near a point is found by looking at a few cells. The grid cells are
+ * sized by the density of food (but never bigger than the original 50),
+ * so a cell holds about one item on average and looking for food to eat
+ * is O(1) even with tens of thousands of items.
+ *
+ * Eaten food is not replaced by a new object, it just gets a new position
+ * (and the grid is updated only if it changes the cell). How food moves
+ * and where it appears depends on FoodDynamics - static and seasonal food
+ * never moves, so it costs nothing until it is eaten.
+ *
+ * @author Jakub Medek
+ */
+public class FoodManager {
+    /**
+     * Maximum size of one cell of the spatial grid.
+     */
+    static final float MAX_CELL_SIZE = 50;
+
+    /**
+     * Density of seasonal food outside of the fertile band, relative to
+     * the middle of the band.
+     */
+    static final float SEASON_MIN_DENSITY = 0.1f;
+
+    /**
+     * Number of food expected in a sector of vision, before the search
+     * of the grid can stop (the farthest of the 16 sectors decides).
+     */
+    static final float SEARCH_FOOD_PER_SECTOR = 3;
+
+    final float[] x, y, vx, vy;
+    final float size;
+    final float width, height, padding;
+    final Arena arena;
+    final Rng random;
+    final SpatialGrid grid;
+    final boolean searchGrid;
+
+    FoodDynamics dynamics = FoodDynamics.DRIFTING;
+    long seasonLength = 20000;
+    long tick = 0;
+
+    /**
+     * Constructor, which places the food at random positions with random
+     * directions of movement.
+     * @param count Number of food.
+     * @param size Size of food.
+     * @param width Width of the arena.
+     * @param height Height of the arena.
+     * @param padding Padding from the sides of the arena, where food does
+     * not go.
+     * @param minCellSize Minimum size of a cell of the grid, e.g. the
+     * eating distance.
+     * @param arena Arena with obstacles, food does not appear on them.
+     * @param random Random generator of the world.
+     */
+    public FoodManager(int count, float size, float width, float height, float padding, float minCellSize, Arena arena, Rng random) {
+        this.size = size;
+        this.width = width;
+        this.height = height;
+        this.padding = padding;
+        this.arena = arena;
+        this.random = random;
+        x = new float[count];
+        y = new float[count];
+        vx = new float[count];
+        vy = new float[count];
+        float cellSize = (count > 0) ? Math.min(MAX_CELL_SIZE, Math.max(minCellSize, (float)Math.sqrt(width*height/count))) : MAX_CELL_SIZE;
+        grid = new SpatialGrid(width, height, cellSize, count);
+        // radius, in which a sector of vision is expected to see a few food
+        double sectorArea = Vision.SECTOR_ANGLE/2, density = count/Math.max(1.0, width*height);
+        double radius = Math.sqrt(SEARCH_FOOD_PER_SECTOR/(sectorArea*Math.max(density, 1e-12)));
+        double searchedCells = Math.pow(2*radius/cellSize + 1, 2);
+        searchGrid = searchedCells < count/2.0;
+        for (int i = 0; i < count; i++) {
+            placeRandomly(i);
+            float angle = random.nextFloat()*TWO_PI;
+            vx[i] = (float)Math.cos(angle);
+            vy[i] = (float)Math.sin(angle);
+            grid.insert(i, x[i], y[i]);
+        }
+    }
+
+    /**
+     * Sets how food moves and where it appears.
+     * @param dynamics Dynamics of food.
+     */
+    public void setDynamics(FoodDynamics dynamics) {
+        this.dynamics = dynamics;
+    }
+
+    /**
+     * Returns how food moves and where it appears.
+     * @return Dynamics of food.
+     */
+    public FoodDynamics getDynamics() {
+        return dynamics;
+    }
+
+    /**
+     * Sets length of one season, used by seasonal dynamics.
+     * @param seasonLength Number of ticks, for which the fertile band
+     * crosses the arena.
+     */
+    public void setSeasonLength(long seasonLength) {
+        this.seasonLength = Math.max(1, seasonLength);
+    }
+
+    /**
+     * Returns length of one season.
+     * @return Number of ticks.
+     */
+    public long getSeasonLength() {
+        return seasonLength;
+    }
+
+    /**
+     * Returns number of food.
+     * @return Number of food.
+     */
+    public int size() {
+        return x.length;
+    }
+
+    /**
+     * Returns X coordinate of a food.
+     * @param i Index of the food.
+     * @return X coordinate.
+     */
+    public float getX(int i) {
+        return x[i];
+    }
+
+    /**
+     * Returns Y coordinate of a food.
+     * @param i Index of the food.
+     * @return Y coordinate.
+     */
+    public float getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * Moves the food by one tick, if it moves at all.
+     * @param tick Number of the tick, used by seasonal dynamics.
+     */
+    public void update(long tick) {
+        this.tick = tick;
+        if (dynamics != FoodDynamics.DRIFTING) return;
+        for (int i = 0; i < x.length; i++) {
+            x[i] += vx[i];
+            y[i] += vy[i];
+            if (x[i] >= width-padding || x[i] < padding) {
+                x[i] -= vx[i];
+                vx[i] *= -1;
+            }
+            if (y[i] >= height-padding || y[i] < padding) {
+                y[i] -= vy[i];
+                vy[i] *= -1;
+            }
+            grid.update(i, x[i], y[i]);
+        }
+    }
+
+    /**
+     * Eats all food within a distance from a point - every eaten food
+     * appears somewhere else right away. Cells are looked at row by row,
+     * food which appears in a cell not looked at yet can be eaten again.
+     * @param headX X coordinate of the point.
+     * @param headY Y coordinate of the point.
+     * @param distance Maximum distance (exclusive).
+     * @return Number of eaten food.
+     */
+    public int eatWithin(float headX, float headY, float distance) {
+        int eaten = 0;
+        for (int row = grid.row(headY - distance); row <= grid.row(headY + distance); row++) {
+            for (int column = grid.column(headX - distance); column <= grid.column(headX + distance); column++) {
+                int i = grid.first(column, row);
+                while (i != -1) {
+                    int next = grid.next(i);
+                    float dx = x[i] - headX, dy = y[i] - headY;
+                    if ((float)Math.sqrt(dx*dx + dy*dy) < distance) {
+                        respawn(i);
+                        eaten++;
+                    }
+                    i = next;
+                }
+            }
+        }
+        return eaten;
+    }
+
+    /**
+     * Adds food into a vision. With limited view range only cells within
+     * the range are looked at. With unlimited range cells are looked at in
+     * growing rings around the head until no food further away can be
+     * seen - every sector has nearer food or ends at the edge of the
+     * arena. The result is the same as looking at every item, but usually
+     * only a few cells around the head are needed. If the food is too
+     * sparse for that (decided once for the whole arena) or the rings get
+     * more cells than there is food, every item is looked at instead.
+     * @param vision Vision with the head and the range already set.
+     */
+    public void see(Vision vision) {
+        float headX = vision.headX, headY = vision.headY, range = vision.range;
+        if (range != Float.POSITIVE_INFINITY) {
+            seeCells(vision, grid.column(headX - range), grid.row(headY - range), grid.column(headX + range), grid.row(headY + range));
+            return;
+        }
+        if (!searchGrid || headX < 0 || headY < 0 || headX > width || headY > height) {
+            seeAll(vision);
+            return;
+        }
+        // food is always inside of the arena, so sectors do not reach further than its edges
+        vision.computeReach(0, 0, width, height);
+        float cellSize = grid.cellSize;
+        float margin = 0.01f*cellSize + 1e-5f*(Math.abs(headX) + Math.abs(headY));
+        int headColumn = grid.column(headX), headRow = grid.row(headY);
+        int visited = 0;
+        for (int ring = 0; ; ring++) {
+            int left = headColumn - ring, top = headRow - ring, right = headColumn + ring, bottom = headRow + ring;
+            for (int row = Math.max(0, top); row <= Math.min(grid.rows - 1, bottom); row++) {
+                boolean edge = (row == top || row == bottom);
+                int step = edge ? 1 : right - left;
+                for (int column = left; column <= right; column += step) {
+                    if (column < 0 || column >= grid.columns) continue;
+                    seeCell(vision, column, row);
+                    visited++;
+                }
+            }
+            // distance from the head to the nearest cell outside of the rings
+            float outside = Float.POSITIVE_INFINITY;
+            if (left > 0) outside = Math.min(outside, headX - left*cellSize);
+            if (top > 0) outside = Math.min(outside, headY - top*cellSize);
+            if (right < grid.columns - 1) outside = Math.min(outside, (right + 1)*cellSize - headX);
+            if (bottom < grid.rows - 1) outside = Math.min(outside, (bottom + 1)*cellSize - headY);
+            if (outside == Float.POSITIVE_INFINITY) return;
+            if (outside - margin > 0 && vision.isSettled(Vision.FOOD, outside - margin)) return;
+            if (visited > x.length) {
+                // seeing some food twice does not change the vision
+                seeAll(vision);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds every food into a vision.
+     * @param vision Vision to add into.
+     */
+    private void seeAll(Vision vision) {
+        for (int i = 0; i < x.length; i++) vision.see(Vision.FOOD, x[i], y[i]);
+    }
+
+    /**
+     * Adds food from a rectangle of cells into a vision.
+     * @param vision Vision to add into.
+     * @param minColumn First column.
+     * @param minRow First row.
+     * @param maxColumn Last column.
+     * @param maxRow Last row.
+     */
+    private void seeCells(Vision vision, int minColumn, int minRow, int maxColumn, int maxRow) {
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) seeCell(vision, column, row);
+        }
+    }
+
+    /**
+     * Adds food from one cell into a vision.
+     * @param vision Vision to add into.
+     * @param column Column of the cell.
+     * @param row Row of the cell.
+     */
+    private void seeCell(Vision vision, int column, int row) {
+        for (int i = grid.first(column, row); i != -1; i = grid.next(i)) vision.see(Vision.FOOD, x[i], y[i]);
+    }
+
+    /**
+     * Moves eaten food to a new position, keeps its velocity.
+     * @param i Index of the food.
+     */
+    public void respawn(int i) {
+        if (dynamics == FoodDynamics.SEASONAL) {
+            for (int tries = 0; tries < 100; tries++) {
+                placeRandomly(i);
+                if (random.nextFloat() < seasonalDensity(x[i])) break;
+            }
+        } else {
+            placeRandomly(i);
+        }
+        grid.update(i, x[i], y[i]);
+    }
+
+    /**
+     * Returns relative density of seasonal food - the fertile band moves
+     * across the arena from left to right once per season.
+     * @param foodX X coordinate.
+     * @return Density from SEASON_MIN_DENSITY to 1.
+     */
+    float seasonalDensity(float foodX) {
+        double phase = (foodX - padding)/Math.max(1, width - 2*padding) - (double)(tick % seasonLength)/seasonLength;
+        double band = 0.5 + 0.5*Math.cos(2*Math.PI*phase);
+        return SEASON_MIN_DENSITY + (1 - SEASON_MIN_DENSITY)*(float)band;
+    }
+
+    /**
+     * Puts a food at a random position inside the arena, respecting the
+     * padding. Positions too close to obstacles are skipped (if there is
+     * a free one in reasonable number of tries). Does not update the grid.
+     * @param i Index of the food.
+     */
+    private void placeRandomly(int i) {
+        x[i] = random.nextFloat()*(width-2*padding)+padding;
+        y[i] = random.nextFloat()*(height-2*padding)+padding;
+        for (int tries = 0; tries < 100 && arena.collides(x[i], y[i], padding); tries++) {
+            x[i] = random.nextFloat()*(width-2*padding)+padding;
+            y[i] = random.nextFloat()*(height-2*padding)+padding;
+        }
+    }
+
+    /**
+     * Sets position and velocity of a food, e.g. when loading a checkpoint.
+     * @param i Index of the food.
+     * @param foodX X coordinate.
+     * @param foodY Y coordinate.
+     * @param velocityX Velocity along X axis.
+     * @param velocityY Velocity along Y axis.
+     */
+    void set(int i, float foodX, float foodY, float velocityX, float velocityY) {
+        x[i] = foodX;
+        y[i] = foodY;
+        vx[i] = velocityX;
+        vy[i] = velocityY;
+        grid.update(i, foodX, foodY);
+    }
+}
@@ -0,0 +1,176 @@
+package snakes;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Runs a world on its own thread with a fixed timestep, so speed of the
+ * evolution does not depend on the frame rate of the window. Speed is a
+ * multiple of the base rate of 60 ticks per second (one tick per frame,
+ * as it was before) or unlimited. If the simulation can't keep up, it
+ * drops the backlog instead of trying to catch up forever.
+ *
+ * Every tick is done while holding a lock. Anyone else changing the world
+ * (e.g. the window turning on metrics) has to hold the lock too, so it
+ * always sees the world between two ticks. The lock is fair, so the window
+ * gets its turn even at unlimited speed. Drawing does not need the lock,
+ * it uses snapshots (SnapshotPublisher). Tick listeners run on the 
+ * simulation thread right after every tick, still holding the lock.
+ *
+ * @author Jakub Medek
+ */
+public class SimulationLoop {
+    /**
+     * Number of ticks per second at speed 1.
+     */
+    public static final float BASE_TICKS_PER_SECOND = 60;
+
+    /**
+     * Maximum backlog of ticks in seconds, older ones are dropped.
+     */
+    static final double MAX_BACKLOG_SECONDS = 0.25;
+
+    final World world;
+    final ReentrantLock lock = new ReentrantLock(true);
+    final List<Consumer<World>> tickListeners = new CopyOnWriteArrayList<>();
+    volatile float speed = 1;
+    volatile boolean paused = false;
+    volatile boolean running = false;
+    Thread thread;
+
+    /**
+     * Constructor, the loop has to be started.
+     * @param world World to simulate.
+     */
+    public SimulationLoop(World world) {
+        this.world = world;
+    }
+
+    /**
+     * Adds a function called after every tick on the simulation thread.
+     * @param listener Function getting the world.
+     */
+    public void addTickListener(Consumer<World> listener) {
+        tickListeners.add(listener);
+    }
+
+    /**
+     * Sets speed of the simulation.
+     * @param speed Multiple of BASE_TICKS_PER_SECOND,
+     * Float.POSITIVE_INFINITY for as fast as possible.
+     */
+    public void setSpeed(float speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Returns speed of the simulation.
+     * @return Multiple of BASE_TICKS_PER_SECOND (can be infinity).
+     */
+    public float getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Pauses or resumes the simulation.
+     * @param paused True to pause.
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * Returns whether the simulation is paused.
+     * @return True if paused.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Locks the world - the simulation waits until unlock.
+     */
+    public void lock() {
+        lock.lock();
+    }
+
+    /**
+     * Unlocks the world.
+     */
+    public void unlock() {
+        lock.unlock();
+    }
+
+    /**
+     * Starts the simulation thread.
+     */
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the simulation thread and waits until it finishes the tick
+     * it is doing.
+     * @throws InterruptedException If waiting was interrupted.
+     */
+    public void stop() throws InterruptedException {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread.join();
+        }
+    }
+
+    /**
+     * Main loop of the simulation thread. Due ticks are counted from the
+     * real time and the speed, the thread sleeps when there is none.
+     */
+    private void run() {
+        long previous = System.nanoTime();
+        double due = 0;
+        while (running) {
+            long now = System.nanoTime();
+            float currentSpeed = speed;
+            if (paused) {
+                due = 0;
+                previous = now;
+                LockSupport.parkNanos(10000000);
+                continue;
+            }
+            if (Float.isInfinite(currentSpeed)) {
+                due = 0;
+                previous = now;
+                tick();
+                continue;
+            }
+
+            double ticksPerSecond = BASE_TICKS_PER_SECOND*currentSpeed;
+            due = Math.min(due + (now - previous)/1e9*ticksPerSecond, Math.max(1, ticksPerSecond*MAX_BACKLOG_SECONDS));
+            previous = now;
+            while (due >= 1 && running && !paused) {
+                tick();
+                due -= 1;
+            }
+            if (due < 1) LockSupport.parkNanos((long)((1 - due)/ticksPerSecond*1e9));
+        }
+    }
+
+    /**
+     * Does one tick and calls the listeners, while holding the lock.
+     */
+    private void tick() {
+        lock.lock();
+        try {
+            world.step();
+            for (Consumer<World> listener : tickListeners) listener.accept(world);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
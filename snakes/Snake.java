@@ -1,20 +1,12 @@
 package snakes;
 
-import java.util.ArrayList;
-import java.util.List;
 import nn.DNA;
-import nn.NeuralNetwork;
-import processing.core.PVector;
-import processing.core.PApplet;
-import static processing.core.PApplet.abs;
+import nn.FlatNeuralNetwork;
 import static processing.core.PApplet.constrain;
+import static processing.core.PApplet.cos;
 import static processing.core.PApplet.dist;
 import static processing.core.PApplet.radians;
-import static processing.core.PConstants.CENTER;
-import static processing.core.PConstants.HALF_PI;
-import static processing.core.PConstants.HSB;
-import static processing.core.PConstants.PI;
-import static processing.core.PConstants.RGB;
+import static processing.core.PApplet.sin;
 import static processing.core.PConstants.TWO_PI;
 
 /**
@@ -24,42 +16,53 @@ import static processing.core.PConstants.TWO_PI;
  * @author Jakub Medek
  */
 public class Snake {
+    /**
+     * Topology of the neural network, which is the same for all snakes.
+     */
+    static final int[] LAYERS_COUNT = new int[]{48, 16, 16, 2};
+
+    /**
+     * Number of genes in DNA of a snake - weights of the network plus one 
+     * gene for color.
+     */
+    public static final int GENES_COUNT = 1091;
+
     DNA dna;
-    NeuralNetwork neuralNetwork;
-    List<PVector> body = new ArrayList<>();
+    FlatNeuralNetwork neuralNetwork;
+    Body body = new Body(8);
     float heading;
     float bodySize;
     float health, healthFromMeal;
     int liveLength = 0;
+    Vision vision = new Vision();
+    boolean dead = false;
 
     /**
-     * Constructor, which assings random DNA, position, heading and size 
-     * of body
+     * Constructor, which assings given DNA, random position, heading and 
+     * size of body
+     * @param dna DNA of the snake, used to create its neural network.
      * @param bodySize Size of snake parts - used for drawing
      * @param padding Padding from the sides of the screen - restricts area 
      * where snake is generated
      * @param maxHealth Maximum health of a snake. It gets assigned to a 
      * health variable and is reduced by one every frame.
      * @param healthFromMeal Extra health given by eating one meal.
-     * @param applet Applet to get width, height and random values.
+     * @param world World to get width, height and random values.
      */
-    public Snake(float bodySize, float padding, float maxHealth, float healthFromMeal, PApplet applet) {
+    public Snake(DNA dna, float bodySize, float padding, float maxHealth, float healthFromMeal, World world) {
         this.health = maxHealth;
         this.healthFromMeal = healthFromMeal;
-        dna = new DNA(1091);
-        PVector originalPosition = new PVector(applet.random(applet.width-2*padding)+padding, applet.random(applet.height-2*padding)+padding);
-        body.add(originalPosition);
+        this.dna = dna;
+        float originalX = world.random(world.width-2*padding)+padding;
+        float originalY = world.random(world.height-2*padding)+padding;
+        body.add(originalX, originalY);
         
-        body.add(PVector.add(originalPosition, new PVector(1, 1)));
-        body.add(PVector.add(originalPosition, new PVector(bodySize*2, bodySize*2)));
+        body.add(originalX + 1, originalY + 1);
+        body.add(originalX + bodySize*2, originalY + bodySize*2);
         
-        heading = applet.random(TWO_PI);
+        heading = world.random(TWO_PI);
         this.bodySize = bodySize;
-        int[] layersCount = new int[]{48, 16, 16, 2};
-
-
-
-        neuralNetwork = new NeuralNetwork(layersCount, dna);
+        neuralNetwork = new FlatNeuralNetwork(LAYERS_COUNT, dna, world.activation);
     }
 
     /**
@@ -68,23 +71,31 @@ public class Snake {
      */
     public void eatFood() {
         health += healthFromMeal;
-        PVector lastPart = body.get(body.size()-1);
-        body.add(lastPart.copy());
+        int last = body.size()-1;
+        body.add(body.x[last], body.y[last]);
     }
 
     /**
      * Function to steer the snake - change its heading. It takes vision 
      * from raycast function and feed it forward through its neural 
      * network. Then it steers based on output of the network.
-     * @param food ArrayList of food, used for raycast function. Snake 
-     * needs to know, if it's looking at food.
-     * @param restrictions ArrayList of restriction, used for steering 
-     * the snake away from walls. Also used in raycast function.
+     * @param world World with food and walls, used for raycast function. 
+     * Snake needs to know, if it's looking at food or wall.
      */
-    public void steer(Food[] food, List<PVector> restrictions) {
-        float[] vision = rayCast(food, restrictions);
+    public void steer(World world) {
+        float[] vision = rayCast(world);
         float[] control = neuralNetwork.feedForward(vision);
-        float steering = control[0] - control[1];
+        turn(control[0], control[1]);
+    }
+
+    /**
+     * Function to change heading of the snake based on output of its 
+     * neural network - snake steers based on difference of the two values.
+     * @param left First output of the network.
+     * @param right Second output of the network.
+     */
+    void turn(float left, float right) {
+        float steering = left - right;
 
         heading += radians(constrain(steering*100,-10,10));
         if (heading >= TWO_PI) heading -= TWO_PI;
@@ -93,62 +104,30 @@ public class Snake {
 
     /**
      * It generates vision for the snake. Snake can see its body, food 
-     * and walls.
-     * @param food ArrayList of food. Snake needs to know, if it's looking 
-     * at some.
-     * @param restrictions ArrayList of restrictions. Snakes needs to know
-     * if it's looking at some.
-     * @return Returns a vision of snake as an 48 long float array.
+     * and walls. Blocks of the body out of view are skipped by their 
+     * bounding boxes. Food is looked up in the nearby cells of the food 
+     * grid. Walls are seen through the analytic arena.
+     * @param world World with food and walls. Snake needs to know, if 
+     * it's looking at some.
+     * @return Returns a vision of snake as an 48 long float array. The 
+     * same array is reused by the next call.
      */
-    private float[] rayCast(Food[] food, List<PVector> restrictions) {
-        float[] vision = new float[48];
-
-        PVector head = body.get(0);
-        for (int i = 1; i < body.size(); i++) {
-            PVector bodyPart = body.get(i);
-            float vectorHeading = PVector.sub(bodyPart, head).heading() + HALF_PI;
-            if (vectorHeading < 0) vectorHeading += TWO_PI;
-            float angle = vectorHeading - this.heading;
-            if (abs(angle) < PI/3) {
-                angle += PI/3;
-                int id = (int) (angle*8/PI*3);
-                if (id < 16) {
-                    float calculatedVision = 50/dist(head.x, head.y, bodyPart.x, bodyPart.y);
-                    if (calculatedVision > vision[id]) vision[id] = calculatedVision;
-                }
-            }
+    float[] rayCast(World world) {
+        float headX = body.x[0], headY = body.y[0];
+        float range = world.viewRange;
+        vision.begin(headX, headY, heading, range);
+
+        float[] bodyX = body.x, bodyY = body.y, bounds = body.bounds;
+        for (int block = 0; block < body.blockCount(); block++) {
+            if (!vision.maySee(bounds[4*block], bounds[4*block+1], bounds[4*block+2], bounds[4*block+3])) continue;
+            for (int i = Math.max(1, body.blockStart(block)); i < body.blockEnd(block); i++) vision.see(Vision.BODY, bodyX[i], bodyY[i]);
         }
 
-        for (Food meal : food) {
-            float vectorHeading = PVector.sub(meal.position, head).heading() + HALF_PI;
-            if (vectorHeading < 0) vectorHeading += TWO_PI;
-            float angle = vectorHeading - this.heading;
-            if (abs(angle) < PI/3) {
-                angle += PI/3;
-                int id = (int) (angle*8/PI*3);
-                if (id < 16) {
-                    float calculatedVision = 300/dist(head.x, head.y, meal.position.x, meal.position.y);
-                    if (calculatedVision > vision[id+16]) vision[id+16] = calculatedVision;
-                }
-            }
-        }
+        world.food.see(vision);
 
-        for (PVector restriction : restrictions) {
-            float vectorHeading = PVector.sub(restriction, head).heading() + HALF_PI;
-            if (vectorHeading < 0) vectorHeading += TWO_PI;
-            float angle = vectorHeading - this.heading;
-            if (angle > TWO_PI) angle -= TWO_PI;
-            if (abs(angle) < PI/3) {
-                angle += PI/3;
-                int id = (int) (angle*8/PI*3);
-                if (id < 16) {
-                    float calculatedVision = 50/dist(head.x, head.y, restriction.x, restriction.y);
-                    if (calculatedVision > vision[id+32]) vision[id+32] = calculatedVision;
-                }
-            }
-        }
+        world.arena.wallVision(vision);
 
-        return vision;
+        return vision.finish();
     }
 
     /**
@@ -177,86 +156,19 @@ public class Snake {
     }
 
     /**
-     * Function to move the snake. The head moves according to the steer 
-     * and all the other body parts move towards the next one.
+     * Returns DNA of the snake.
+     * @return DNA of the snake.
      */
-    public void move() {
-        float speed = 3; //change speed based on size
-        PVector velocity = new PVector(0, -speed);
-        velocity.rotate(heading);
-        body.get(0).add(velocity);
-        for (int i = 1; i < body.size(); i++) {
-            PVector lastPart = body.get(i-1);
-            PVector actPart = body.get(i);
-            float mag = dist(lastPart.x, lastPart.y, actPart.x, actPart.y) - bodySize;
-            PVector deltaPosition = PVector.sub(lastPart, actPart);
-            deltaPosition.normalize();
-            deltaPosition.mult(mag);
-            actPart.add(deltaPosition);
-        }
+    public DNA getDNA() {
+        return dna;
     }
 
     /**
-     * Function to display the snake. It takes the color from the last 
-     * byte in DNA.
-     * @param isBest True, if this snake is the best snake - snake with 
-     * highest fitness.
-     * @param applet
+     * Function to move the snake. The head moves according to the steer 
+     * and all the other body parts move towards the next one.
      */
-    public void display(boolean isBest, PApplet applet) {
-        applet.colorMode(HSB);
-        applet.fill(dna.genes[1090]+128, 255, 255);
-        applet.noStroke();
-        applet.ellipseMode(CENTER);
-        if (isBest) applet.fill(255);
-
-        for (PVector bodyPart : body) applet.ellipse(bodyPart.x, bodyPart.y, bodySize, bodySize);
-
-        applet.colorMode(RGB);
-
-        if (isBest) {
-            applet.pushMatrix();
-                PVector head = body.get(0);
-                applet.translate(head.x, head.y);
-                applet.stroke(255);
-                PVector act = PVector.fromAngle(heading-HALF_PI).mult(100);
-                applet.line(0, 0, act.x, act.y);
-
-                act.rotate(PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-                act.rotate(PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-                act.rotate(PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-                act.rotate(PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-                act.rotate(PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-                act.rotate(PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-                act.rotate(PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-                act.rotate(PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-
-                act = PVector.fromAngle(heading-HALF_PI).mult(100);
-                act.rotate(-PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-                act.rotate(-PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-                act.rotate(-PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-                act.rotate(-PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-                act.rotate(-PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-                act.rotate(-PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-                act.rotate(-PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-                act.rotate(-PI / 3 / 8);
-                applet.line(0, 0, act.x, act.y);
-            applet.popMatrix();
-        }
+    public void move() {
+        float speed = 3; //change speed based on size
+        body.follow(speed*sin(heading), -speed*cos(heading), bodySize);
     }
 }
@@ -0,0 +1,46 @@
+package snakes;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join task which does the per-snake part of a tick - steering
+ * (vision and neural network), moving and updating health - for a range
+ * of snakes. Snakes do not affect each other in this part, so the range
+ * gets split and processed in parallel.
+ *
+ * @author Jakub Medek
+ */
+class SnakeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of snakes which are processed by one task without further
+     * splitting.
+     */
+    static final int THRESHOLD = 16;
+
+    final World world;
+    final int from, to;
+
+    /**
+     * Constructor, which sets the range of snakes to process.
+     * @param world World with the snakes.
+     * @param from Index of first snake to process (inclusive).
+     * @param to Index of last snake to process (exclusive).
+     */
+    SnakeTask(World world, int from, int to) {
+        this.world = world;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= THRESHOLD) {
+            world.updateSnakes(from, to);
+        } else {
+            int middle = (from + to) >>> 1;
+            invokeAll(new SnakeTask(world, from, middle), new SnakeTask(world, middle, to));
+        }
+    }
+}
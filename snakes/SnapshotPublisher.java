@@ -0,0 +1,75 @@
+package snakes;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands snapshots of a world from the simulation thread to the window
+ * thread without any lock (triple buffering). There are three snapshots:
+ * one filled by the simulation, one drawn by the window and one ready in
+ * the middle. Whoever is done swaps its snapshot with the middle one by
+ * one atomic operation, so neither side ever waits for the other one and
+ * the window never gets a snapshot, which is still being filled. Two
+ * snapshots would not be enough - after publishing one, the simulation
+ * would have to wait until the window stops drawing the other one.
+ *
+ * The simulation fills a new snapshot only when the window took the
+ * previous one, so at high speed it does not copy the world after every
+ * tick, just once per frame.
+ *
+ * @author Jakub Medek
+ */
+public class SnapshotPublisher {
+    /**
+     * Bit of the state saying that the middle snapshot was not taken yet.
+     */
+    static final int FRESH = 4;
+
+    final WorldSnapshot[] snapshots = new WorldSnapshot[]{new WorldSnapshot(), new WorldSnapshot(), new WorldSnapshot()};
+
+    /**
+     * Index of the middle snapshot and the FRESH bit.
+     */
+    final AtomicInteger state = new AtomicInteger(0);
+
+    /**
+     * Index of the snapshot filled by the simulation thread.
+     */
+    int back = 1;
+
+    /**
+     * Index of the snapshot drawn by the window thread.
+     */
+    int front = 2;
+
+    /**
+     * True when the window thread got at least one snapshot.
+     */
+    boolean received = false;
+
+    /**
+     * Copies a world into a new snapshot and publishes it, if the window
+     * took the previous one. Can be called only from one thread, between
+     * ticks.
+     * @param world World to copy.
+     * @return True if a snapshot was published.
+     */
+    public boolean publish(World world) {
+        if ((state.get() & FRESH) != 0) return false;
+        snapshots[back].capture(world);
+        back = state.getAndSet(back | FRESH) & 3;
+        return true;
+    }
+
+    /**
+     * Returns the newest published snapshot. It can be used until the next
+     * call, only from one thread.
+     * @return The snapshot, null if nothing was published yet.
+     */
+    public WorldSnapshot acquire() {
+        if ((state.get() & FRESH) != 0) {
+            front = state.getAndSet(front) & 3;
+            received = true;
+        }
+        return received ? snapshots[front] : null;
+    }
+}
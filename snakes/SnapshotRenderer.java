@@ -0,0 +1,392 @@
+package snakes;
+
+import java.awt.Color;
+import java.util.Arrays;
+import processing.core.PApplet;
+import processing.core.PImage;
+import visualization.Camera;
+import static processing.core.PConstants.ARGB;
+import static processing.core.PConstants.CENTER;
+import static processing.core.PConstants.HALF_PI;
+import static processing.core.PConstants.PI;
+import static processing.core.PConstants.POINTS;
+import static processing.core.PConstants.ROUND;
+
+/**
+ * Draws snapshots of a world in batches instead of one ellipse (and
+ * several style changes) per body part.
+ *
+ * With an OpenGL renderer (P2D, P3D) all food and all body parts are sent
+ * as two shapes of round points, so Processing puts them into one vertex
+ * buffer and draws them at once. Color changes only between snakes. The
+ * software renderer (JAVA2D) would draw every point separately, so
+ * instead discs are stamped straight into the pixels of an image of the
+ * size of the window, which is then drawn as a whole.
+ *
+ * The world is drawn through a camera. Snakes whose bounding box is
+ * outside of the view are skipped whole and so are parts and food outside
+ * of it, so the cost depends on what is visible, not on the size of the
+ * world. Level of detail: the view is divided into cells of half of the
+ * body size (but at least two pixels) and only the first body part whose
+ * center falls into a cell is drawn - the disc of that part covers most
+ * of the cell (and the rest is covered by the neighbours), so the other
+ * parts would be hardly visible. Number of drawn parts is then limited by
+ * the size of the window, not by the number of snakes. The best snake is
+ * always drawn on top, fully.
+ *
+ * @author Jakub Medek
+ */
+public class SnapshotRenderer {
+    /**
+     * Colors of the snakes by their hue (full saturation and brightness).
+     */
+    static final int[] HUE_COLORS = new int[256];
+    static {
+        for (int hue = 0; hue < HUE_COLORS.length; hue++) HUE_COLORS[hue] = Color.HSBtoRGB(hue/255f, 1, 1);
+    }
+
+    static final int FOOD_COLOR = 0xFFC86464;
+    static final int BEST_COLOR = 0xFFFFFFFF;
+
+    boolean levelOfDetail = true;
+    int drawnCount;
+
+    float left, top, right, bottom, zoom;
+
+    int[] cells = new int[0];
+    int columns, rows;
+    float cellSize;
+    int frame = 0;
+
+    PImage layer;
+    Disc foodDisc, bodyDisc;
+
+    /**
+     * Precomputed coverage of pixels by a disc for the software renderer.
+     * Every row has a span of fully covered pixels, which can be filled at
+     * once, only pixels around it are partially covered.
+     */
+    static class Disc {
+        final float diameter;
+        final int size;
+        final int[] coverage;
+        final int[] fullFrom, fullTo;
+
+        /**
+         * Computes coverage of a disc, edge pixels are partially covered.
+         * @param diameter Diameter in pixels.
+         */
+        Disc(float diameter) {
+            this.diameter = diameter;
+            size = (int)Math.ceil(diameter) + 1;
+            coverage = new int[size*size];
+            float radius = diameter/2;
+            for (int j = 0; j < size; j++) {
+                for (int i = 0; i < size; i++) {
+                    float dx = i + 0.5f - size/2f, dy = j + 0.5f - size/2f;
+                    float covered = radius - (float)Math.sqrt(dx*dx + dy*dy) + 0.5f;
+                    coverage[j*size + i] = (int)(255*Math.max(0, Math.min(1, covered)));
+                }
+            }
+            fullFrom = new int[size];
+            fullTo = new int[size];
+            for (int j = 0; j < size; j++) {
+                int from = 0;
+                while (from < size && coverage[j*size + from] < 255) from++;
+                int to = from;
+                while (to < size && coverage[j*size + to] == 255) to++;
+                fullFrom[j] = from;
+                fullTo[j] = to;
+            }
+        }
+    }
+
+    /**
+     * Turns the level of detail on or off.
+     * @param levelOfDetail True to skip parts hidden by other parts.
+     */
+    public void setLevelOfDetail(boolean levelOfDetail) {
+        this.levelOfDetail = levelOfDetail;
+    }
+
+    /**
+     * Returns whether the level of detail is used.
+     * @return True if it is on.
+     */
+    public boolean getLevelOfDetail() {
+        return levelOfDetail;
+    }
+
+    /**
+     * Returns number of body parts drawn in the last frame.
+     * @return Number of parts.
+     */
+    public int getDrawnCount() {
+        return drawnCount;
+    }
+
+    /**
+     * Draws all the food and snakes of a snapshot.
+     * @param snapshot Snapshot to draw.
+     * @param camera Camera to look through.
+     * @param showBest True to draw the best snake white, with lines where
+     * it looks.
+     * @param applet Applet to draw into.
+     */
+    public void display(WorldSnapshot snapshot, Camera camera, boolean showBest, PApplet applet) {
+        startFrame(snapshot.bodySize, camera);
+        int skipped = showBest ? snapshot.bestSnakeId : -1;
+        if (applet.g.isGL()) displayShapes(snapshot, skipped, applet);
+        else displayPixels(snapshot, skipped, applet);
+        if (showBest) displayBest(snapshot, camera, applet);
+    }
+
+    /**
+     * Takes the view from the camera and prepares the cells of the level
+     * of detail for a new frame. Cells are marked by number of the frame,
+     * so they never have to be cleared.
+     * @param bodySize Size of body parts.
+     * @param camera Camera to look through.
+     */
+    private void startFrame(float bodySize, Camera camera) {
+        drawnCount = 0;
+        left = camera.getLeft();
+        top = camera.getTop();
+        right = camera.getRight();
+        bottom = camera.getBottom();
+        zoom = camera.getZoom();
+        cellSize = Math.max(2/zoom, bodySize/2);
+        int newColumns = (int)Math.ceil((right - left)/cellSize), newRows = (int)Math.ceil((bottom - top)/cellSize);
+        if (newColumns*newRows > cells.length) {
+            cells = new int[newColumns*newRows];
+            frame = 0;
+        }
+        columns = newColumns;
+        rows = newRows;
+        frame++;
+    }
+
+    /**
+     * Decides whether a disc is at least partly in the view.
+     * @param x X coordinate of the center in the world.
+     * @param y Y coordinate of the center in the world.
+     * @param radius Radius of the disc.
+     * @return True if the disc is in the view.
+     */
+    private boolean isInView(float x, float y, float radius) {
+        return x + radius >= left && y + radius >= top && x - radius < right && y - radius < bottom;
+    }
+
+    /**
+     * Decides whether any part of a snake can be visible, by its bounding
+     * box.
+     * @param snapshot Snapshot with the snake.
+     * @param snake Index of the snake.
+     * @param radius Radius of body parts.
+     * @return True if the snake is at least partly in the view.
+     */
+    private boolean isVisible(WorldSnapshot snapshot, int snake, float radius) {
+        float[] bounds = snapshot.bounds;
+        return bounds[4*snake] - radius < right && bounds[4*snake+2] + radius >= left
+            && bounds[4*snake+1] - radius < bottom && bounds[4*snake+3] + radius >= top;
+    }
+
+    /**
+     * Decides whether a body part is drawn - it has to be at least partly
+     * in the view and, with level of detail, its cell must be free.
+     * @param x X coordinate of the part in the world.
+     * @param y Y coordinate of the part in the world.
+     * @param radius Radius of the part.
+     * @return True if the part should be drawn.
+     */
+    private boolean isDrawn(float x, float y, float radius) {
+        if (x + radius < left || y + radius < top || x - radius >= right || y - radius >= bottom) return false;
+        if (!levelOfDetail) return true;
+        int column = (int)((x - left)/cellSize), row = (int)((y - top)/cellSize);
+        if (x < left || y < top || column >= columns || row >= rows) return true;
+        int cell = row*columns + column;
+        if (cells[cell] == frame) return false;
+        cells[cell] = frame;
+        return true;
+    }
+
+    /**
+     * Converts X coordinate of the world to the window.
+     * @param x X coordinate in the world.
+     * @return X coordinate in the window.
+     */
+    private float screenX(float x) {
+        return (x - left)*zoom;
+    }
+
+    /**
+     * Converts Y coordinate of the world to the window.
+     * @param y Y coordinate in the world.
+     * @return Y coordinate in the window.
+     */
+    private float screenY(float y) {
+        return (y - top)*zoom;
+    }
+
+    /**
+     * Draws food and snakes as batches of round points (OpenGL).
+     * @param snapshot Snapshot to draw.
+     * @param skipped Snake which is not drawn, -1 for none.
+     * @param applet Applet to draw into.
+     */
+    private void displayShapes(WorldSnapshot snapshot, int skipped, PApplet applet) {
+        applet.pushStyle();
+        applet.strokeCap(ROUND);
+
+        float foodRadius = snapshot.foodSize/2;
+        applet.stroke(FOOD_COLOR);
+        applet.strokeWeight(Math.max(1, snapshot.foodSize*zoom));
+        applet.beginShape(POINTS);
+        for (int i = 0; i < snapshot.foodCount; i++) {
+            float x = snapshot.foodX[i], y = snapshot.foodY[i];
+            if (!isInView(x, y, foodRadius)) continue;
+            applet.vertex(screenX(x), screenY(y));
+        }
+        applet.endShape();
+
+        float radius = snapshot.bodySize/2;
+        applet.strokeWeight(Math.max(1, snapshot.bodySize*zoom));
+        applet.beginShape(POINTS);
+        for (int i = 0; i < snapshot.snakeCount; i++) {
+            if (i == skipped || !isVisible(snapshot, i, radius)) continue;
+            applet.stroke(HUE_COLORS[snapshot.hues[i]]);
+            for (int part = snapshot.partsStart[i]; part < snapshot.partsStart[i+1]; part++) {
+                if (!isDrawn(snapshot.x[part], snapshot.y[part], radius)) continue;
+                applet.vertex(screenX(snapshot.x[part]), screenY(snapshot.y[part]));
+                drawnCount++;
+            }
+        }
+        applet.endShape();
+        applet.popStyle();
+    }
+
+    /**
+     * Draws food and snakes into the pixels of an image and the image into
+     * the window (software renderer).
+     * @param snapshot Snapshot to draw.
+     * @param skipped Snake which is not drawn, -1 for none.
+     * @param applet Applet to draw into.
+     */
+    private void displayPixels(WorldSnapshot snapshot, int skipped, PApplet applet) {
+        if (layer == null || layer.width != applet.width || layer.height != applet.height) {
+            layer = applet.createImage(applet.width, applet.height, ARGB);
+        }
+        float foodDiameter = Math.max(1, snapshot.foodSize*zoom), bodyDiameter = Math.max(1, snapshot.bodySize*zoom);
+        if (foodDisc == null || foodDisc.diameter != foodDiameter) foodDisc = new Disc(foodDiameter);
+        if (bodyDisc == null || bodyDisc.diameter != bodyDiameter) bodyDisc = new Disc(bodyDiameter);
+
+        layer.loadPixels();
+        int[] pixels = layer.pixels;
+        Arrays.fill(pixels, 0);
+        float foodRadius = snapshot.foodSize/2;
+        for (int i = 0; i < snapshot.foodCount; i++) {
+            float x = snapshot.foodX[i], y = snapshot.foodY[i];
+            if (!isInView(x, y, foodRadius)) continue;
+            stamp(pixels, foodDisc, screenX(x), screenY(y), FOOD_COLOR);
+        }
+
+        float radius = snapshot.bodySize/2;
+        for (int i = 0; i < snapshot.snakeCount; i++) {
+            if (i == skipped || !isVisible(snapshot, i, radius)) continue;
+            int color = HUE_COLORS[snapshot.hues[i]];
+            for (int part = snapshot.partsStart[i]; part < snapshot.partsStart[i+1]; part++) {
+                if (!isDrawn(snapshot.x[part], snapshot.y[part], radius)) continue;
+                stamp(pixels, bodyDisc, screenX(snapshot.x[part]), screenY(snapshot.y[part]), color);
+                drawnCount++;
+            }
+        }
+        layer.updatePixels();
+        applet.image(layer, 0, 0);
+    }
+
+    /**
+     * Draws a disc into the pixels of the layer. Fully covered pixels are
+     * overwritten, the edge is blended.
+     * @param pixels Pixels of the layer.
+     * @param disc Disc to draw.
+     * @param x X coordinate of the center in the window.
+     * @param y Y coordinate of the center in the window.
+     * @param color Color of the disc.
+     */
+    private void stamp(int[] pixels, Disc disc, float x, float y, int color) {
+        int width = layer.width, height = layer.height;
+        int left = Math.round(x - disc.size/2f), top = Math.round(y - disc.size/2f);
+        int fromI = Math.max(0, -left), toI = Math.min(disc.size, width - left);
+        int fromJ = Math.max(0, -top), toJ = Math.min(disc.size, height - top);
+        int rgb = color & 0xFFFFFF;
+        for (int j = fromJ; j < toJ; j++) {
+            int row = (top + j)*width + left, maskRow = j*disc.size;
+            int fullFrom = Math.max(fromI, disc.fullFrom[j]), fullTo = Math.min(toI, disc.fullTo[j]);
+            if (fullFrom < fullTo) {
+                Arrays.fill(pixels, row + fullFrom, row + fullTo, color | 0xFF000000);
+                for (int i = fromI; i < fullFrom; i++) blendPixel(pixels, row + i, rgb, disc.coverage[maskRow + i]);
+                for (int i = fullTo; i < toI; i++) blendPixel(pixels, row + i, rgb, disc.coverage[maskRow + i]);
+            } else {
+                for (int i = fromI; i < toI; i++) blendPixel(pixels, row + i, rgb, disc.coverage[maskRow + i]);
+            }
+        }
+    }
+
+    /**
+     * Draws one partially covered pixel.
+     * @param pixels Pixels of the layer.
+     * @param index Index of the pixel.
+     * @param rgb Color without alpha.
+     * @param alpha Coverage of the pixel, 0 to 255.
+     */
+    private static void blendPixel(int[] pixels, int index, int rgb, int alpha) {
+        if (alpha == 0) return;
+        int destination = pixels[index];
+        int destinationAlpha = destination >>> 24;
+        if (alpha == 255 || destinationAlpha == 0) pixels[index] = (alpha << 24) | rgb;
+        else pixels[index] = (Math.max(alpha, destinationAlpha) << 24) | blend(destination, rgb, alpha);
+    }
+
+    /**
+     * Mixes two colors.
+     * @param from The first color.
+     * @param to The second color.
+     * @param amount Amount of the second color, 0 to 255.
+     * @return Mixed color without alpha.
+     */
+    private static int blend(int from, int to, int amount) {
+        int red = ((from >> 16) & 0xFF)*(255 - amount) + ((to >> 16) & 0xFF)*amount;
+        int green = ((from >> 8) & 0xFF)*(255 - amount) + ((to >> 8) & 0xFF)*amount;
+        int blue = (from & 0xFF)*(255 - amount) + (to & 0xFF)*amount;
+        return ((red/255) << 16) | ((green/255) << 8) | (blue/255);
+    }
+
+    /**
+     * Draws the best snake white on top of the others, with lines where
+     * it looks.
+     * @param snapshot Snapshot to draw.
+     * @param camera Camera to look through.
+     * @param applet Applet to draw into.
+     */
+    private void displayBest(WorldSnapshot snapshot, Camera camera, PApplet applet) {
+        int from = snapshot.partsStart[snapshot.bestSnakeId], to = snapshot.partsStart[snapshot.bestSnakeId+1];
+        if (from == to) return;
+        applet.pushMatrix();
+        camera.apply(applet);
+        applet.pushStyle();
+        applet.fill(BEST_COLOR);
+        applet.noStroke();
+        applet.ellipseMode(CENTER);
+        for (int part = from; part < to; part++) applet.ellipse(snapshot.x[part], snapshot.y[part], snapshot.bodySize, snapshot.bodySize);
+
+        applet.stroke(BEST_COLOR);
+        applet.strokeWeight(1/zoom);
+        for (int ray = -8; ray <= 8; ray++) {
+            float angle = snapshot.bestHeading - HALF_PI + ray*PI/3/8;
+            applet.line(snapshot.x[from], snapshot.y[from], snapshot.x[from] + 100*PApplet.cos(angle), snapshot.y[from] + 100*PApplet.sin(angle));
+        }
+        applet.popStyle();
+        applet.popMatrix();
+        drawnCount += to - from;
+    }
+}
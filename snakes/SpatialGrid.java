@@ -0,0 +1,127 @@
+package snakes;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the arena, which keeps track of which objects are
+ * in which cell, so only objects near some point have to be checked.
+ * Objects are identified by index (e.g. index in the food array) and
+ * every cell holds a doubly linked list of them, so inserting, removing
+ * and moving an object is O(1). Positions outside of the arena are
+ * stored in the border cells.
+ *
+ * Cells are walked like this:
+ * <pre>
+ * for (int row = grid.row(minY); row &lt;= grid.row(maxY); row++)
+ *     for (int column = grid.column(minX); column &lt;= grid.column(maxX); column++)
+ *         for (int id = grid.first(column, row); id != -1; id = grid.next(id)) ...
+ * </pre>
+ *
+ * @author Jakub Medek
+ */
+public class SpatialGrid {
+    final float cellSize;
+    final int columns, rows;
+    final int[] cellFirst;
+    final int[] next, previous, cellOf;
+
+    /**
+     * Constructor, which makes an empty grid.
+     * @param width Width of the covered area.
+     * @param height Height of the covered area.
+     * @param cellSize Size of one cell.
+     * @param capacity Number of objects, ids go from 0 to capacity-1.
+     */
+    public SpatialGrid(float width, float height, float cellSize, int capacity) {
+        this.cellSize = cellSize;
+        columns = Math.max(1, (int)Math.ceil(width/cellSize));
+        rows = Math.max(1, (int)Math.ceil(height/cellSize));
+        cellFirst = new int[columns*rows];
+        Arrays.fill(cellFirst, -1);
+        next = new int[capacity];
+        previous = new int[capacity];
+        cellOf = new int[capacity];
+        Arrays.fill(cellOf, -1);
+    }
+
+    /**
+     * Returns column of the cell containing given x coordinate.
+     * @param x X coordinate.
+     * @return Column, clamped to the grid.
+     */
+    public int column(float x) {
+        int column = (int)(x/cellSize);
+        return (x < 0) ? 0 : Math.min(column, columns - 1);
+    }
+
+    /**
+     * Returns row of the cell containing given y coordinate.
+     * @param y Y coordinate.
+     * @return Row, clamped to the grid.
+     */
+    public int row(float y) {
+        int row = (int)(y/cellSize);
+        return (y < 0) ? 0 : Math.min(row, rows - 1);
+    }
+
+    /**
+     * Returns first object in a cell.
+     * @param column Column of the cell.
+     * @param row Row of the cell.
+     * @return Id of the object or -1, if the cell is empty.
+     */
+    public int first(int column, int row) {
+        return cellFirst[row*columns + column];
+    }
+
+    /**
+     * Returns next object in the same cell.
+     * @param id Id of the current object.
+     * @return Id of the next object or -1, if there is no other.
+     */
+    public int next(int id) {
+        return next[id];
+    }
+
+    /**
+     * Inserts an object into the grid.
+     * @param id Id of the object.
+     * @param x X coordinate of the object.
+     * @param y Y coordinate of the object.
+     */
+    public void insert(int id, float x, float y) {
+        int cell = row(y)*columns + column(x);
+        cellOf[id] = cell;
+        previous[id] = -1;
+        next[id] = cellFirst[cell];
+        if (cellFirst[cell] != -1) previous[cellFirst[cell]] = id;
+        cellFirst[cell] = id;
+    }
+
+    /**
+     * Removes an object from the grid.
+     * @param id Id of the object.
+     */
+    public void remove(int id) {
+        int cell = cellOf[id];
+        if (cell == -1) return;
+        if (previous[id] != -1) next[previous[id]] = next[id];
+        else cellFirst[cell] = next[id];
+        if (next[id] != -1) previous[next[id]] = previous[id];
+        cellOf[id] = -1;
+    }
+
+    /**
+     * Updates position of an object. Does nothing, if the object stays
+     * in the same cell.
+     * @param id Id of the object.
+     * @param x New x coordinate of the object.
+     * @param y New y coordinate of the object.
+     */
+    public void update(int id, float x, float y) {
+        int cell = row(y)*columns + column(x);
+        if (cell == cellOf[id]) return;
+        remove(id);
+        insert(id, x, y);
+    }
+}
@@ -0,0 +1,247 @@
+package snakes;
+
+import java.util.Arrays;
+import static processing.core.PConstants.PI;
+
+/**
+ * Class which builds vision of one snake. Vision is divided into 16
+ * sectors covering 120 degrees in front of the snake and has three
+ * channels - body, food and walls - so it is 48 values long, which is
+ * the input of the neural network. Every sector keeps the nearest object
+ * and sees it as strength/distance.
+ *
+ * Objects are sorted into sectors in the frame of the snake using signs
+ * of cross products with precomputed sector borders (no atan2), objects
+ * out of view range are dropped by squared distance and square roots are
+ * only taken once per sector at the end. All buffers are preallocated, so
+ * building vision does not allocate anything.
+ *
+ * @author Jakub Medek
+ */
+public class Vision {
+    /**
+     * Number of vision sectors and the angle covered by one of them.
+     */
+    public static final int SECTORS = 16;
+    static final float SECTOR_ANGLE = PI/3/8;
+
+    /**
+     * Offsets of the channels in the vision.
+     */
+    public static final int BODY = 0, FOOD = 16, WALLS = 32;
+
+    /**
+     * Strength of objects in the channels - value seen at distance of 1.
+     */
+    static final float[] STRENGTH = {50, 300, 50};
+
+    /**
+     * Sine and cosine of the borders of the sectors relative to the
+     * heading (there is one more border than sectors).
+     */
+    static final float[] SECTOR_SIN = new float[SECTORS + 1];
+    static final float[] SECTOR_COS = new float[SECTORS + 1];
+
+    static {
+        for (int i = 0; i <= SECTORS; i++) {
+            double angle = -PI/3 + i*SECTOR_ANGLE;
+            SECTOR_SIN[i] = (float)Math.sin(angle);
+            SECTOR_COS[i] = (float)Math.cos(angle);
+        }
+    }
+
+    final float[] values = new float[3*SECTORS];
+    final float[] nearestSq = new float[3*SECTORS];
+
+    /**
+     * Directions of the sector borders in the world frame, valid after
+     * calling begin.
+     */
+    final float[] directionX = new float[SECTORS + 1];
+    final float[] directionY = new float[SECTORS + 1];
+
+    float headX, headY;
+    float forwardX, forwardY, rightX, rightY;
+    float range, rangeSq;
+
+    /**
+     * Normals of the first and the last sector border in the world frame,
+     * their dot product with a vector has the same sign as fromBorder.
+     */
+    float firstNormalX, firstNormalY, lastNormalX, lastNormalY;
+
+    /**
+     * How far every sector reaches inside of a rectangle, valid after
+     * calling computeReach.
+     */
+    final float[] reach = new float[SECTORS];
+
+    /**
+     * Starts building new vision.
+     * @param x X coordinate of the head.
+     * @param y Y coordinate of the head.
+     * @param heading Heading of the snake.
+     * @param range Maximum distance seen (can be infinity).
+     */
+    public void begin(float x, float y, float heading, float range) {
+        headX = x;
+        headY = y;
+        this.range = range;
+        rangeSq = range*range;
+        float sin = (float)Math.sin(heading), cos = (float)Math.cos(heading);
+        forwardX = sin;
+        forwardY = -cos;
+        rightX = cos;
+        rightY = sin;
+        for (int i = 0; i <= SECTORS; i++) {
+            directionX[i] = sin*SECTOR_COS[i] + cos*SECTOR_SIN[i];
+            directionY[i] = -(cos*SECTOR_COS[i] - sin*SECTOR_SIN[i]);
+        }
+        firstNormalX = SECTOR_COS[0]*rightX - SECTOR_SIN[0]*forwardX;
+        firstNormalY = SECTOR_COS[0]*rightY - SECTOR_SIN[0]*forwardY;
+        lastNormalX = SECTOR_COS[SECTORS]*rightX - SECTOR_SIN[SECTORS]*forwardX;
+        lastNormalY = SECTOR_COS[SECTORS]*rightY - SECTOR_SIN[SECTORS]*forwardY;
+        Arrays.fill(nearestSq, rangeSq);
+    }
+
+    /**
+     * Adds an object into the vision.
+     * @param channel Offset of the channel (BODY, FOOD or WALLS).
+     * @param x X coordinate of the object.
+     * @param y Y coordinate of the object.
+     */
+    public void see(int channel, float x, float y) {
+        float dx = x - headX, dy = y - headY;
+        float distanceSq = dx*dx + dy*dy;
+        if (distanceSq >= rangeSq || distanceSq == 0) return;
+        int sector = sector(dx*rightX + dy*rightY, dx*forwardX + dy*forwardY);
+        if (sector >= 0) offer(channel, sector, distanceSq);
+    }
+
+    /**
+     * Checks if anything inside of a box can be seen - the box must be
+     * nearer than the view range and not completely outside of one of the
+     * outer sector borders. It can return true for a box, in which nothing
+     * is seen, but never false for a box, in which something is (objects
+     * near the borders are given a small margin for rounding).
+     * @param minX Minimum x coordinate of the box.
+     * @param minY Minimum y coordinate of the box.
+     * @param maxX Maximum x coordinate of the box.
+     * @param maxY Maximum y coordinate of the box.
+     * @return False, if nothing in the box can be seen.
+     */
+    public boolean maySee(float minX, float minY, float maxX, float maxY) {
+        float left = minX - headX, top = minY - headY, right = maxX - headX, bottom = maxY - headY;
+        float dx = Math.max(0, Math.max(left, -right)), dy = Math.max(0, Math.max(top, -bottom));
+        if (dx*dx + dy*dy >= rangeSq) return false;
+        float margin = 1e-3f*(Math.max(-left, right) + Math.max(-top, bottom));
+        // objects have to be clockwise from the first border and counterclockwise from the last
+        float first = Math.max(firstNormalX*left, firstNormalX*right) + Math.max(firstNormalY*top, firstNormalY*bottom);
+        if (first < -margin) return false;
+        float last = Math.min(lastNormalX*left, lastNormalX*right) + Math.min(lastNormalY*top, lastNormalY*bottom);
+        return last < margin;
+    }
+
+    /**
+     * Computes how far every sector reaches inside of a rectangle, which
+     * contains the head - objects inside of the rectangle cannot be seen
+     * in a sector further than its reach. The reach is a bit bigger than
+     * exact (neighbouring sectors share corners, plus a margin for
+     * rounding).
+     * @param minX Minimum x coordinate of the rectangle.
+     * @param minY Minimum y coordinate of the rectangle.
+     * @param maxX Maximum x coordinate of the rectangle.
+     * @param maxY Maximum y coordinate of the rectangle.
+     */
+    void computeReach(float minX, float minY, float maxX, float maxY) {
+        Arrays.fill(reach, 0);
+        // the farthest point of a sector inside of the rectangle is where a border leaves it or a corner
+        for (int border = 0; border <= SECTORS; border++) {
+            float dx = directionX[border], dy = directionY[border];
+            float exit = Float.POSITIVE_INFINITY;
+            if (dx > 0) exit = Math.min(exit, (maxX - headX)/dx);
+            else if (dx < 0) exit = Math.min(exit, (minX - headX)/dx);
+            if (dy > 0) exit = Math.min(exit, (maxY - headY)/dy);
+            else if (dy < 0) exit = Math.min(exit, (minY - headY)/dy);
+            if (border > 0) reach[border - 1] = Math.max(reach[border - 1], exit);
+            if (border < SECTORS) reach[border] = Math.max(reach[border], exit);
+        }
+        for (int corner = 0; corner < 4; corner++) {
+            float dx = ((corner & 1) == 0 ? minX : maxX) - headX, dy = ((corner & 2) == 0 ? minY : maxY) - headY;
+            int sector = sector(dx*rightX + dy*rightY, dx*forwardX + dy*forwardY);
+            if (sector < 0) continue;
+            float distance = (float)Math.sqrt(dx*dx + dy*dy);
+            for (int i = Math.max(0, sector - 1); i <= Math.min(SECTORS - 1, sector + 1); i++) reach[i] = Math.max(reach[i], distance);
+        }
+        for (int i = 0; i < SECTORS; i++) reach[i] += 1;
+    }
+
+    /**
+     * Checks if no object further than some distance can change a channel
+     * - every sector already has a nearer object or does not reach that
+     * far (computeReach has to be called before).
+     * @param channel Offset of the channel (BODY, FOOD or WALLS).
+     * @param distance Distance, nearer objects are already seen.
+     * @return True, if objects further away do not matter.
+     */
+    boolean isSettled(int channel, float distance) {
+        float distanceSq = distance*distance;
+        for (int i = 0; i < SECTORS; i++) {
+            if (reach[i] >= distance && nearestSq[channel + i] > distanceSq) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Offers a squared distance of an object in a known sector. The
+     * sector keeps the nearest one.
+     * @param channel Offset of the channel (BODY, FOOD or WALLS).
+     * @param sector Index of the sector.
+     * @param distanceSq Squared distance of the object.
+     */
+    void offer(int channel, int sector, float distanceSq) {
+        if (distanceSq < nearestSq[channel + sector]) nearestSq[channel + sector] = distanceSq;
+    }
+
+    /**
+     * Finds the sector of a vector given in the frame of the snake.
+     * @param side Component to the right of the snake.
+     * @param forward Component in front of the snake.
+     * @return Index of the sector or -1, if it is out of field of view.
+     */
+    static int sector(float side, float forward) {
+        if (!fromBorder(0, side, forward) || fromBorder(SECTORS, side, forward)) return -1;
+        int low = 0, high = SECTORS;
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (fromBorder(middle, side, forward)) low = middle;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Checks on which side of a sector border a vector lies (sign of
+     * their cross product).
+     * @param border Index of the border.
+     * @param side Component to the right of the snake.
+     * @param forward Component in front of the snake.
+     * @return True, if the vector is at the border or clockwise from it.
+     */
+    private static boolean fromBorder(int border, float side, float forward) {
+        return SECTOR_COS[border]*side - SECTOR_SIN[border]*forward >= 0;
+    }
+
+    /**
+     * Finishes the vision - turns the nearest distances into values seen.
+     * @return Vision as an 48 long float array. The same array is returned
+     * every time, so it is valid only until the next begin.
+     */
+    public float[] finish() {
+        for (int i = 0; i < values.length; i++) {
+            float distanceSq = nearestSq[i];
+            values[i] = (distanceSq < rangeSq) ? STRENGTH[i/SECTORS]/(float)Math.sqrt(distanceSq) : 0;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,599 @@
+package snakes;
+
+import evolution.RouletteSelection;
+import evolution.Selection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import metrics.DeathCause;
+import metrics.Metrics;
+import metrics.Phase;
+import nn.Activation;
+import nn.DNA;
+import nn.PopulationNetwork;
+import util.Rng;
+
+/**
+ * Class which holds the whole simulation state - snakes, food and walls
+ * of the arena - and advances it one tick at a time. It does not need
+ * any window, so it can be stepped as fast as possible (headless
+ * training) or wrapped by Box, which displays it.
+ *
+ * @author Jakub Medek
+ */
+public class World {
+    FoodManager food;
+    Arena arena;
+    Snake[] snakes;
+    float width, height;
+    float foodSize;
+    float padding;
+
+    float snakeBodySize;
+    float snakeMaxHealth;
+    float snakeHealthFromMeal;
+
+    float viewRange = Float.POSITIVE_INFINITY;
+
+    int bestSnakeId = 0;
+    float bestFitness = 0;
+    long tick = 0;
+    boolean replaceDeadSnakes = true;
+
+    Rng random;
+    ForkJoinPool pool;
+    PopulationNetwork populationNetwork;
+    Activation activation = Activation.EXACT;
+    Selection selection;
+    Metrics metrics;
+    long reproduceNanos;
+
+    /**
+     * Constructor - sets the simulation enviroment
+     * @param snakeCount Total number of snakes, all get random DNA
+     * @param maxFood Maximum number of food in the arena
+     * @param foodSize Size of food - used for eating distance
+     * @param bodySize Size of snake parts - used for collisions
+     * @param padding Padding from the sides of the arena - restricts area
+     * where food and snakes are generated
+     * @param snakeMaxHealth Maximum health of a snake. It gets assigned to a
+     * health variable and is reduced by one every tick.
+     * @param snakeHealthFromMeal Extra health given by eating one meal.
+     * @param width Width of the arena.
+     * @param height Height of the arena.
+     * @param random Random generator used for everything in the simulation, 
+     * so the same seed gives the same simulation.
+     */
+    public World(int snakeCount, int maxFood, float foodSize, float bodySize, float padding, float snakeMaxHealth, float snakeHealthFromMeal, float width, float height, Rng random) {
+        this(new DNA[snakeCount], maxFood, foodSize, bodySize, padding, snakeMaxHealth, snakeHealthFromMeal, width, height, random);
+    }
+
+    /**
+     * Constructor - sets the simulation enviroment
+     * @param genomes DNA of the snakes, one snake is made for each of them 
+     * (null entries get random DNA)
+     * @param maxFood Maximum number of food in the arena
+     * @param foodSize Size of food - used for eating distance
+     * @param bodySize Size of snake parts - used for collisions
+     * @param padding Padding from the sides of the arena - restricts area
+     * where food and snakes are generated
+     * @param snakeMaxHealth Maximum health of a snake. It gets assigned to a
+     * health variable and is reduced by one every tick.
+     * @param snakeHealthFromMeal Extra health given by eating one meal.
+     * @param width Width of the arena.
+     * @param height Height of the arena.
+     * @param random Random generator used for everything in the simulation, 
+     * so the same seed gives the same simulation.
+     */
+    public World(DNA[] genomes, int maxFood, float foodSize, float bodySize, float padding, float snakeMaxHealth, float snakeHealthFromMeal, float width, float height, Rng random) {
+        this.width = width;
+        this.height = height;
+        this.random = random;
+        this.foodSize = foodSize;
+        this.padding = padding;
+        this.snakeBodySize = bodySize;
+        this.snakeMaxHealth = snakeMaxHealth;
+        this.snakeHealthFromMeal = snakeHealthFromMeal;
+        arena = new Arena(width, height);
+
+        snakes = new Snake[genomes.length];
+        for (int i = 0; i < snakes.length; i++) {
+            DNA dna = (genomes[i] != null) ? genomes[i] : new DNA(Snake.GENES_COUNT, random);
+            snakes[i] = new Snake(dna, bodySize, padding, snakeMaxHealth, snakeHealthFromMeal, this);
+        }
+        setSelection(new RouletteSelection(snakes.length));
+        food = new FoodManager(maxFood, foodSize, width, height, padding, (bodySize + foodSize)*0.5f, arena, random);
+    }
+
+    /**
+     * Sets how far snakes see. Food and walls further away are not seen, 
+     * which lets vision look only into nearby cells of the food grid.
+     * @param viewRange Maximum distance seen, Float.POSITIVE_INFINITY for 
+     * unlimited vision.
+     */
+    public void setViewRange(float viewRange) {
+        this.viewRange = viewRange;
+    }
+
+    /**
+     * Advances the whole simulation by one tick.
+     */
+    public void step() {
+        manageFood();
+        manageSnakes();
+    }
+
+    /**
+     * Function which handles all the tasks with food - eating and moving.
+     */
+    public void manageFood() {
+        long start = startTiming();
+        checkSnakeFoodCollision();
+        start = endPhase(Phase.COLLIDE, start);
+        food.update(tick);
+        endPhase(Phase.MOVE, start);
+    }
+
+    /**
+     * Sets how food moves and where it appears (drifting by default).
+     * @param dynamics Dynamics of food.
+     */
+    public void setFoodDynamics(FoodDynamics dynamics) {
+        food.setDynamics(dynamics);
+    }
+
+    /**
+     * Sets length of one season of seasonal food.
+     * @param seasonLength Number of ticks.
+     */
+    public void setSeasonLength(long seasonLength) {
+        food.setSeasonLength(seasonLength);
+    }
+
+    /**
+     * Returns the food of the world.
+     * @return Food manager.
+     */
+    public FoodManager getFood() {
+        return food;
+    }
+
+    /**
+     * Turns on collecting metrics - time of phases, deaths and samples 
+     * of fitness. Timing costs a little, so it is off by default.
+     * @param metrics Metrics to collect into, null to turn it off.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns collected metrics.
+     * @return Metrics or null, if they are not collected.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns current time for timing a phase.
+     * @return Time in nanoseconds, 0 if metrics are off.
+     */
+    private long startTiming() {
+        return (metrics != null) ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds time since start to a phase.
+     * @param phase The phase.
+     * @param start Time returned by startTiming or endPhase.
+     * @return Current time, so the next phase can start.
+     */
+    private long endPhase(Phase phase, long start) {
+        if (metrics == null) return 0;
+        long now = System.nanoTime();
+        metrics.addTime(phase, now - start);
+        return now;
+    }
+
+    /**
+     * Sets what happens with dead snakes. By default they are replaced by 
+     * children of other snakes right away (steady-state evolution). If 
+     * not replaced, dead snakes stay in place, are skipped by the 
+     * simulation and keep the fitness they died with - useful when every 
+     * snake is evaluated on its own.
+     * @param replaceDeadSnakes True to replace dead snakes.
+     */
+    public void setReplaceDeadSnakes(boolean replaceDeadSnakes) {
+        this.replaceDeadSnakes = replaceDeadSnakes;
+    }
+
+    /**
+     * Sets number of threads used for the per-snake part of a tick. With
+     * one thread everything runs on the calling thread.
+     * @param threads Number of threads to use.
+     */
+    public void setParallelism(int threads) {
+        if (pool != null) pool.shutdown();
+        pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * Turns on or off batched inference. When on, neural networks of all 
+     * snakes are evaluated together by PopulationNetwork instead of every 
+     * snake using its own network.
+     * @param batched True to use batched inference.
+     */
+    public void setBatchedInference(boolean batched) {
+        if (!batched) {
+            populationNetwork = null;
+            return;
+        }
+        populationNetwork = new PopulationNetwork(Snake.LAYERS_COUNT, snakes.length);
+        populationNetwork.setActivation(activation);
+        for (int i = 0; i < snakes.length; i++) populationNetwork.setWeights(i, snakes[i].dna);
+    }
+
+    /**
+     * Sets how parents of new snakes are picked. Default is roulette 
+     * (fitness proportional) selection. Current fitness of all snakes is 
+     * filled into the selection.
+     * @param selection Selection sized for the number of snakes.
+     */
+    public void setSelection(Selection selection) {
+        this.selection = selection;
+        for (int i = 0; i < snakes.length; i++) selection.set(i, snakes[i].getFitness());
+    }
+
+    /**
+     * Sets activation function used by neural networks of all snakes.
+     * @param activation Activation function to use.
+     */
+    public void setActivation(Activation activation) {
+        this.activation = activation;
+        for (Snake snake : snakes) snake.neuralNetwork.setActivation(activation);
+        if (populationNetwork != null) populationNetwork.setActivation(activation);
+    }
+
+    /**
+     * Function which manages all the snakes. A tick has two phases -
+     * steering, moving and health update is done for every snake
+     * independently (in parallel, if enabled), then collisions, deaths and
+     * replacements are resolved serially in order of snakes, so the result
+     * does not depend on number of threads.
+     */
+    public void manageSnakes() {
+        bestFitness = 0;
+        for (int i = 0; i < snakes.length; i++) {
+            float actFitness = snakes[i].getFitness();
+            if (actFitness > bestFitness) {
+                bestFitness = actFitness;
+                bestSnakeId = i;
+            }
+        }
+
+        if (pool != null && snakes.length > SnakeTask.THRESHOLD) pool.invoke(new SnakeTask(this, 0, snakes.length));
+        else updateSnakes(0, snakes.length);
+        if (populationNetwork != null) populationNetwork.copyLayers(bestSnakeId, snakes[bestSnakeId].neuralNetwork.layers);
+
+        long start = startTiming();
+        reproduceNanos = 0;
+        checkSnakeWallCollision();
+        checkSnakeBodyCollision();
+        checkSnakeAlive();
+        if (metrics != null) {
+            metrics.addTime(Phase.COLLIDE, System.nanoTime() - start - reproduceNanos);
+            metrics.addTime(Phase.REPRODUCE, reproduceNanos);
+        }
+        tick++;
+        if (metrics != null && metrics.isSampleTick(tick)) sampleMetrics();
+    }
+
+    /**
+     * Takes a sample of metrics with fitness of the living snakes.
+     */
+    private void sampleMetrics() {
+        float[] fitness = new float[getAliveCount()];
+        int count = 0;
+        for (Snake snake : snakes) if (!snake.dead) fitness[count++] = snake.getFitness();
+        metrics.sample(tick, fitness);
+    }
+
+    /**
+     * Steers, moves and updates health of snakes in given range. Only
+     * touches the snakes in the range, so different ranges can be updated
+     * at the same time.
+     * @param from Index of first snake to update (inclusive).
+     * @param to Index of last snake to update (exclusive).
+     */
+    void updateSnakes(int from, int to) {
+        long start = startTiming();
+        if (populationNetwork != null) {
+            for (int i = from; i < to; i++) {
+                if (!snakes[i].dead) populationNetwork.setInput(i, snakes[i].rayCast(this));
+            }
+            start = endPhase(Phase.SENSE, start);
+            populationNetwork.feedForward(from, to);
+            start = endPhase(Phase.THINK, start);
+            for (int i = from; i < to; i++) {
+                Snake snake = snakes[i];
+                if (snake.dead) continue;
+                snake.turn(populationNetwork.getOutput(i, 0), populationNetwork.getOutput(i, 1));
+                snake.move();
+                snake.updateHealth();
+            }
+            endPhase(Phase.MOVE, start);
+            return;
+        }
+
+        if (metrics != null) {
+            updateSnakesTimed(from, to);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            Snake snake = snakes[i];
+            if (snake.dead) continue;
+            snake.steer(this);
+            snake.move();
+            snake.updateHealth();
+        }
+    }
+
+    /**
+     * Same as the per-snake part of updateSnakes, but measures time of 
+     * sensing, thinking and moving of every snake.
+     * @param from Index of first snake to update (inclusive).
+     * @param to Index of last snake to update (exclusive).
+     */
+    private void updateSnakesTimed(int from, int to) {
+        long sense = 0, think = 0, move = 0;
+        for (int i = from; i < to; i++) {
+            Snake snake = snakes[i];
+            if (snake.dead) continue;
+            long start = System.nanoTime();
+            float[] vision = snake.rayCast(this);
+            long sensed = System.nanoTime();
+            float[] control = snake.neuralNetwork.feedForward(vision);
+            long thought = System.nanoTime();
+            snake.turn(control[0], control[1]);
+            snake.move();
+            snake.updateHealth();
+            long moved = System.nanoTime();
+            sense += sensed - start;
+            think += thought - sensed;
+            move += moved - thought;
+        }
+        metrics.addTime(Phase.SENSE, sense);
+        metrics.addTime(Phase.THINK, think);
+        metrics.addTime(Phase.MOVE, move);
+    }
+
+    /**
+     * Function to check if any of the snakes has collided with food, which
+     * results in eating the food. Only food in the grid cells around the 
+     * head of the snake is checked, eaten food appears somewhere else 
+     * right away. Selection and best fitness are updated with the new 
+     * fitness of the snake.
+     */
+    void checkSnakeFoodCollision() {
+        for (int id = 0; id < snakes.length; id++) {
+            Snake snake = snakes[id];
+            if (snake.dead) continue;
+            float headX = snake.body.x[0], headY = snake.body.y[0];
+            float eatDistance = (snake.bodySize + foodSize)*0.5f;
+            int eaten = food.eatWithin(headX, headY, eatDistance);
+            if (eaten == 0) continue;
+            for (int meal = 0; meal < eaten; meal++) snake.eatFood();
+            selection.set(id, snake.getFitness());
+            bestFitness = Math.max(bestFitness, snake.getFitness());
+        }
+    }
+
+    /**
+     * Checks collisions between snake and wall. When snake collides into
+     * wall, snake dies.
+     */
+    private void checkSnakeWallCollision() {
+        for (int i = 0; i < snakes.length; i++) {
+            if (snakes[i].dead) continue;
+            Body body = snakes[i].body;
+            if (arena.collides(body.x[0], body.y[0], snakes[i].bodySize*0.5f)) snakeDied(i, DeathCause.WALL);
+        }
+    }
+
+    /**
+     * Checks collision between snake and its body. When snake collides into
+     * its body, snake dies. Only blocks of the body with bounding box near
+     * the head are checked part by part.
+     */
+    private void checkSnakeBodyCollision() {
+        for (int i = 0; i < snakes.length; i++) {
+            if (snakes[i].dead) continue;
+            Body body = snakes[i].body;
+            float headX = body.x[0], headY = body.y[0];
+            float limitSq = snakes[i].bodySize*0.95f*snakes[i].bodySize*0.95f;
+            blocks:
+            for (int block = 0; block < body.blockCount(); block++) {
+                if (body.blockDistanceSq(block, headX, headY) >= limitSq) continue;
+                for (int j = Math.max(1, body.blockStart(block)); j < body.blockEnd(block); j++) {
+                    float dx = body.x[j] - headX, dy = body.y[j] - headY;
+                    if (dx*dx + dy*dy < limitSq) {
+                        snakeDied(i, DeathCause.BODY);
+                        break blocks;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if snake is alive. If not, it dies.
+     */
+    private void checkSnakeAlive() {
+        for (int i = 0; i < snakes.length; i++) {
+            if (!snakes[i].dead && !snakes[i].isAlive()) {
+                snakeDied(i, DeathCause.STARVATION);
+            }
+        }
+    }
+
+    /**
+     * Handles death of a snake - it either gets replaced or stays dead.
+     * @param id Index of the snake, which died.
+     * @param cause Why the snake died.
+     */
+    private void snakeDied(int id, DeathCause cause) {
+        if (metrics != null) metrics.recordDeath(cause);
+        if (!replaceDeadSnakes) {
+            snakes[id].dead = true;
+            return;
+        }
+        long start = startTiming();
+        replaceSnake(id);
+        if (metrics != null) reproduceNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Function to replace a snake, if it died. Function takes two random
+     * snakes based on their fitness and combines their DNA together. Then
+     * it makes another snake based on that DNA. Parents are picked by the 
+     * selection and the highest fitness (for the mutation rate) is kept 
+     * up to date by the best snake scan and eating, so replacing does not 
+     * look at the whole population.
+     * @param id Index of the snake to replace.
+     */
+    private void replaceSnake(int id) {
+        int snakeAId = selection.select(-1, random);
+        int snakeBId = selection.select(snakeAId, random);
+        Snake snakeA = snakes[snakeAId];
+        Snake snakeB = snakes[snakeBId];
+        DNA child = snakeA.dna.crossover(snakeB.dna, random);
+        child.mutate(30f/bestFitness, random);
+
+        snakes[id] = new Snake(child, snakeBodySize, padding, snakeMaxHealth, snakeHealthFromMeal, this);
+        selection.set(id, snakes[id].getFitness());
+        if (populationNetwork != null) populationNetwork.setWeights(id, child);
+    }
+
+    /**
+     * Returns DNA of the snakes with the highest fitness, e.g. to send 
+     * them to another population.
+     * @param count Number of genomes to return.
+     * @return Genomes sorted from the best one.
+     */
+    public DNA[] getBestGenomes(int count) {
+        count = Math.min(count, snakes.length);
+        DNA[] best = new DNA[count];
+        boolean[] taken = new boolean[snakes.length];
+        for (int k = 0; k < count; k++) {
+            int bestIndex = -1;
+            for (int i = 0; i < snakes.length; i++) {
+                if (!taken[i] && (bestIndex == -1 || snakes[i].getFitness() > snakes[bestIndex].getFitness())) bestIndex = i;
+            }
+            taken[bestIndex] = true;
+            best[k] = snakes[bestIndex].dna;
+        }
+        return best;
+    }
+
+    /**
+     * Puts new snakes with given DNA into the world in place of the 
+     * snakes with the lowest fitness, e.g. genomes coming from another 
+     * population. Every genome gets a different place, so genomes of one 
+     * batch never replace each other.
+     * @param genomes DNA of the new snakes, at most one per snake of the 
+     * world is used.
+     */
+    public void insertGenomes(List<DNA> genomes) {
+        int count = Math.min(genomes.size(), snakes.length);
+        boolean[] taken = new boolean[snakes.length];
+        for (int k = 0; k < count; k++) {
+            int worst = -1;
+            for (int i = 0; i < snakes.length; i++) {
+                if (!taken[i] && (worst == -1 || snakes[i].getFitness() < snakes[worst].getFitness())) worst = i;
+            }
+            taken[worst] = true;
+            DNA dna = genomes.get(k);
+            snakes[worst] = new Snake(dna, snakeBodySize, padding, snakeMaxHealth, snakeHealthFromMeal, this);
+            selection.set(worst, snakes[worst].getFitness());
+            if (populationNetwork != null) populationNetwork.setWeights(worst, dna);
+        }
+    }
+
+    /**
+     * Returns a random number from 0 (inclusive) to high (exclusive).
+     * @param high Upper limit of the random number.
+     * @return Random number.
+     */
+    public float random(float high) {
+        return random.nextFloat()*high;
+    }
+
+    /**
+     * Returns the snake with the highest fitness (as found in the last
+     * tick).
+     * @return Best snake.
+     */
+    public Snake getBestSnake() {
+        return snakes[bestSnakeId];
+    }
+
+    /**
+     * Returns the arena, e.g. to add obstacles into it.
+     * @return Arena of the world.
+     */
+    public Arena getArena() {
+        return arena;
+    }
+
+    /**
+     * Returns number of snakes.
+     * @return Number of snakes.
+     */
+    public int getSnakeCount() {
+        return snakes.length;
+    }
+
+    /**
+     * Returns a snake.
+     * @param id Index of the snake.
+     * @return The snake.
+     */
+    public Snake getSnake(int id) {
+        return snakes[id];
+    }
+
+    /**
+     * Returns number of snakes, which are alive. It is smaller than number 
+     * of snakes only if dead snakes are not replaced.
+     * @return Number of living snakes.
+     */
+    public int getAliveCount() {
+        int alive = 0;
+        for (Snake snake : snakes) if (!snake.dead) alive++;
+        return alive;
+    }
+
+    /**
+     * Returns number of ticks simulated so far.
+     * @return Number of ticks.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns width of the arena.
+     * @return Width of the arena.
+     */
+    public float getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns height of the arena.
+     * @return Height of the arena.
+     */
+    public float getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,156 @@
+package snakes;
+
+import java.util.Arrays;
+
+/**
+ * Copy of everything needed to draw one tick of a world - positions of
+ * body parts and food, colors of the snakes and activations of the best
+ * snake. It is filled on the simulation thread and drawn on the window
+ * thread (by SnapshotRenderer), so drawing never touches the live world.
+ *
+ * Arrays are kept between captures and grow only when the world needs
+ * more space, so filling a snapshot does not allocate in the long run.
+ * Body parts of all snakes are stored one after another, partsStart says
+ * where every snake begins. Every snake also has a bounding box of its
+ * parts (merged from the boxes of the body's blocks), so a renderer can
+ * skip snakes outside of the view without looking at their parts.
+ *
+ * @author Jakub Medek
+ */
+public class WorldSnapshot {
+    long tick;
+    int aliveCount;
+    float bestFitness;
+    int bestSnakeId;
+    float bestHeading;
+
+    int snakeCount;
+    int[] partsStart = new int[1];
+    float[] x = new float[0];
+    float[] y = new float[0];
+    int[] hues = new int[0];
+    float[] bounds = new float[0];
+    float bodySize;
+    float width, height;
+
+    int foodCount;
+    float[] foodX = new float[0];
+    float[] foodY = new float[0];
+    float foodSize;
+
+    float[][] activations = new float[0][];
+
+    /**
+     * Copies the current state of a world into the snapshot. Has to be
+     * called between ticks.
+     * @param world World to copy.
+     */
+    void capture(World world) {
+        tick = world.tick;
+        bestSnakeId = world.bestSnakeId;
+        bodySize = world.snakeBodySize;
+        foodSize = world.foodSize;
+        width = world.width;
+        height = world.height;
+
+        Snake[] snakes = world.snakes;
+        snakeCount = snakes.length;
+        if (partsStart.length < snakeCount + 1) {
+            partsStart = new int[snakeCount + 1];
+            hues = new int[snakeCount];
+            bounds = new float[snakeCount*4];
+        }
+        int parts = 0;
+        for (Snake snake : snakes) parts += snake.body.size;
+        if (x.length < parts) {
+            x = new float[parts + parts/2];
+            y = new float[x.length];
+        }
+
+        int alive = 0;
+        int at = 0;
+        for (int i = 0; i < snakeCount; i++) {
+            Snake snake = snakes[i];
+            Body body = snake.body;
+            partsStart[i] = at;
+            System.arraycopy(body.x, 0, x, at, body.size);
+            System.arraycopy(body.y, 0, y, at, body.size);
+            float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+            float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+            for (int block = 0; block < body.blockCount(); block++) {
+                minX = Math.min(minX, body.bounds[4*block]);
+                minY = Math.min(minY, body.bounds[4*block+1]);
+                maxX = Math.max(maxX, body.bounds[4*block+2]);
+                maxY = Math.max(maxY, body.bounds[4*block+3]);
+            }
+            bounds[4*i] = minX;
+            bounds[4*i+1] = minY;
+            bounds[4*i+2] = maxX;
+            bounds[4*i+3] = maxY;
+            at += body.size;
+            hues[i] = snake.dna.getGene(Snake.GENES_COUNT-1)+128;
+            if (!snake.dead) alive++;
+        }
+        partsStart[snakeCount] = at;
+        aliveCount = alive;
+
+        Snake best = snakes[bestSnakeId];
+        bestFitness = best.getFitness();
+        bestHeading = best.heading;
+        float[][] layers = best.neuralNetwork.layers;
+        if (activations.length != layers.length) activations = new float[layers.length][];
+        for (int layer = 0; layer < layers.length; layer++) {
+            if (activations[layer] == null || activations[layer].length != layers[layer].length) activations[layer] = new float[layers[layer].length];
+            System.arraycopy(layers[layer], 0, activations[layer], 0, layers[layer].length);
+        }
+
+        FoodManager food = world.food;
+        foodCount = food.size();
+        if (foodX.length < foodCount) {
+            foodX = Arrays.copyOf(foodX, foodCount);
+            foodY = Arrays.copyOf(foodY, foodCount);
+        }
+        System.arraycopy(food.x, 0, foodX, 0, foodCount);
+        System.arraycopy(food.y, 0, foodY, 0, foodCount);
+    }
+
+    /**
+     * Returns the tick the snapshot was taken after.
+     * @return Number of the tick.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns number of body parts of all snakes.
+     * @return Number of parts.
+     */
+    public int getPartCount() {
+        return partsStart[snakeCount];
+    }
+
+    /**
+     * Returns number of living snakes.
+     * @return Number of snakes.
+     */
+    public int getAliveCount() {
+        return aliveCount;
+    }
+
+    /**
+     * Returns fitness of the best snake.
+     * @return Fitness.
+     */
+    public float getBestFitness() {
+        return bestFitness;
+    }
+
+    /**
+     * Returns activations of the neurons of the best snake.
+     * @return Array of layers, must not be changed.
+     */
+    public float[][] getActivations() {
+        return activations;
+    }
+}
@@ -0,0 +1,102 @@
+package evolution;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import nn.DNA;
+import org.junit.Test;
+import snakes.Snake;
+import util.Rng;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests of distributed evaluation on this machine - results have to be
+ * the same as with local evaluation.
+ *
+ * @author Jakub Medek
+ */
+public class DistributedEvaluatorTest {
+    static final Episode EPISODE = new Episode(12, 10, 20, 20, 400, 400, 640, 480, 2000);
+    static final int GENOMES = 8;
+
+    /**
+     * Genomes evaluated by two child worker processes get the same fitness
+     * as in this process.
+     * @throws IOException If the coordinator can't be started.
+     */
+    @Test(timeout = 120000)
+    public void childWorkersMatchLocalEvaluation() throws IOException {
+        DistributedEvaluator distributed = new DistributedEvaluator(EPISODE, InetAddress.getLoopbackAddress(), 0, 2);
+        try {
+            assertArrayEquals(evaluateLocally(), distributed.evaluate(genomes(), rngs()), 0);
+        } finally {
+            distributed.shutdown();
+        }
+    }
+
+    /**
+     * Without any worker the coordinator evaluates the genomes itself.
+     * @throws IOException If the coordinator can't be started.
+     */
+    @Test(timeout = 120000)
+    public void evaluatesWithoutWorkers() throws IOException {
+        DistributedEvaluator distributed = new DistributedEvaluator(EPISODE, InetAddress.getLoopbackAddress(), 0, 0);
+        distributed.setFallbackDelay(100);
+        try {
+            assertArrayEquals(evaluateLocally(), distributed.evaluate(genomes(), rngs()), 0);
+        } finally {
+            distributed.shutdown();
+        }
+    }
+
+    /**
+     * A worker, which takes a genome and never answers, is disconnected
+     * and the genome is evaluated again.
+     * @throws IOException If the coordinator can't be started.
+     */
+    @Test(timeout = 120000)
+    public void hungWorkerIsReplaced() throws IOException {
+        DistributedEvaluator distributed = new DistributedEvaluator(EPISODE, InetAddress.getLoopbackAddress(), 0, 0);
+        distributed.setTaskTimeout(300);
+        distributed.setFallbackDelay(100);
+        try (Socket hung = new Socket(InetAddress.getLoopbackAddress(), distributed.getPort())) {
+            assertArrayEquals(evaluateLocally(), distributed.evaluate(genomes(), rngs()), 0);
+        } finally {
+            distributed.shutdown();
+        }
+    }
+
+    /**
+     * Evaluates the genomes with a local evaluator.
+     * @return Fitness of the genomes.
+     */
+    private static float[] evaluateLocally() {
+        LocalEvaluator local = new LocalEvaluator(EPISODE, 2);
+        try {
+            return local.evaluate(genomes(), rngs());
+        } finally {
+            local.shutdown();
+        }
+    }
+
+    /**
+     * Makes the same random genomes every time.
+     * @return Genomes.
+     */
+    private static DNA[] genomes() {
+        Rng rng = new Rng(21);
+        DNA[] genomes = new DNA[GENOMES];
+        for (int i = 0; i < GENOMES; i++) genomes[i] = new DNA(Snake.GENES_COUNT, rng);
+        return genomes;
+    }
+
+    /**
+     * Makes the same random generators of the episodes every time.
+     * @return Random generators.
+     */
+    private static Rng[] rngs() {
+        Rng[] rngs = new Rng[GENOMES];
+        for (int i = 0; i < GENOMES; i++) rngs[i] = new Rng(100 + i);
+        return rngs;
+    }
+}
@@ -0,0 +1,163 @@
+package evolution;
+
+import org.junit.Test;
+import util.Rng;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the selection strategies - how often members are picked is
+ * compared with the expected probabilities.
+ *
+ * @author Jakub Medek
+ */
+public class SelectionTest {
+    static final int TRIALS = 400000;
+    static final float[] FITNESS = {1, 4, 0, 2, 8, 5};
+
+    /**
+     * Roulette picks members proportionally to fitness.
+     */
+    @Test
+    public void rouletteIsProportional() {
+        assertFrequencies(new RouletteSelection(FITNESS.length), FITNESS, -1, proportional(FITNESS, -1));
+        assertFrequencies(new RouletteSelection(FITNESS.length), FITNESS, 4, proportional(FITNESS, 4));
+    }
+
+    /**
+     * Alias method picks members proportionally to fitness.
+     */
+    @Test
+    public void aliasIsProportional() {
+        assertFrequencies(new AliasSelection(FITNESS.length), FITNESS, -1, proportional(FITNESS, -1));
+        assertFrequencies(new AliasSelection(FITNESS.length), FITNESS, 4, proportional(FITNESS, 4));
+    }
+
+    /**
+     * Tournament picks the best of a few random members.
+     */
+    @Test
+    public void tournamentPicksBestOfRandomMembers() {
+        assertFrequencies(new TournamentSelection(FITNESS.length, 3), FITNESS, -1, tournament(FITNESS, -1, 3));
+        assertFrequencies(new TournamentSelection(FITNESS.length, 3), FITNESS, 1, tournament(FITNESS, 1, 3));
+    }
+
+    /**
+     * Rank selection picks the better of two random members with
+     * probability pressure - 1.
+     */
+    @Test
+    public void rankDependsOnOrderOnly() {
+        assertFrequencies(new RankSelection(FITNESS.length, 1.5f), FITNESS, -1, rank(FITNESS, -1, 1.5f));
+        assertFrequencies(new RankSelection(FITNESS.length, 1.5f), FITNESS, 3, rank(FITNESS, 3, 1.5f));
+    }
+
+    /**
+     * Without any positive fitness every strategy picks uniformly.
+     */
+    @Test
+    public void zeroFitnessIsUniform() {
+        float[] zeros = new float[5];
+        double[] uniform = {0.25, 0.25, 0, 0.25, 0.25};
+        for (String name : new String[]{"roulette", "alias", "tournament", "rank"}) {
+            assertFrequencies(Selection.byName(name, zeros.length), zeros, 2, uniform);
+        }
+    }
+
+    /**
+     * Roulette must not get stuck, when only a rounding residue of many
+     * updates is left in its tree.
+     */
+    @Test(timeout = 10000)
+    public void rouletteSurvivesRoundingResidue() {
+        RouletteSelection selection = new RouletteSelection(100);
+        Rng rng = new Rng(5);
+        for (int i = 0; i < 20000; i++) selection.set(i % 100, (float)Math.pow(10, -4 + 12*rng.nextDouble()));
+        for (int i = 0; i < 100; i++) selection.set(i, (i == 7) ? 1 : 0);
+        for (int i = 0; i < 1000; i++) assertTrue(selection.select(7, rng) != 7);
+    }
+
+    /**
+     * Picks many members and compares how often each one was picked with
+     * the expected probabilities.
+     * @param selection Tested selection.
+     * @param fitness Fitness of the members.
+     * @param excluded Excluded member.
+     * @param expected Expected probabilities.
+     */
+    private static void assertFrequencies(Selection selection, float[] fitness, int excluded, double[] expected) {
+        for (int i = 0; i < fitness.length; i++) selection.set(i, fitness[i]);
+        Rng rng = new Rng(11);
+        int[] counts = new int[fitness.length];
+        for (int i = 0; i < TRIALS; i++) counts[selection.select(excluded, rng)]++;
+        for (int i = 0; i < fitness.length; i++) {
+            assertEquals("member " + i, expected[i], (double)counts[i]/TRIALS, 0.005);
+        }
+    }
+
+    /**
+     * Returns probabilities proportional to fitness.
+     * @param fitness Fitness of the members.
+     * @param excluded Excluded member.
+     * @return Probabilities.
+     */
+    private static double[] proportional(float[] fitness, int excluded) {
+        double sum = 0;
+        for (int i = 0; i < fitness.length; i++) if (i != excluded) sum += fitness[i];
+        double[] expected = new double[fitness.length];
+        for (int i = 0; i < fitness.length; i++) expected[i] = (i == excluded) ? 0 : fitness[i]/sum;
+        return expected;
+    }
+
+    /**
+     * Returns probabilities of tournament selection with distinct fitness
+     * - a member wins, if all candidates are ranked at most as high.
+     * @param fitness Fitness of the members.
+     * @param excluded Excluded member.
+     * @param size Size of the tournament.
+     * @return Probabilities.
+     */
+    private static double[] tournament(float[] fitness, int excluded, int size) {
+        int n = (excluded >= 0) ? fitness.length - 1 : fitness.length;
+        double[] expected = new double[fitness.length];
+        for (int i = 0; i < fitness.length; i++) {
+            if (i == excluded) continue;
+            int rank = rankOf(fitness, excluded, i);
+            expected[i] = (Math.pow(rank, size) - Math.pow(rank - 1, size))/Math.pow(n, size);
+        }
+        return expected;
+    }
+
+    /**
+     * Returns probabilities of rank selection with distinct fitness.
+     * @param fitness Fitness of the members.
+     * @param excluded Excluded member.
+     * @param pressure Selection pressure.
+     * @return Probabilities.
+     */
+    private static double[] rank(float[] fitness, int excluded, float pressure) {
+        int n = (excluded >= 0) ? fitness.length - 1 : fitness.length;
+        double[] expected = new double[fitness.length];
+        for (int i = 0; i < fitness.length; i++) {
+            if (i == excluded) continue;
+            int rank = rankOf(fitness, excluded, i);
+            expected[i] = (2 - pressure)/n + (pressure - 1)*(2.0*rank - 1)/((double)n*n);
+        }
+        return expected;
+    }
+
+    /**
+     * Returns rank of a member from the worst one (1) among not excluded.
+     * @param fitness Fitness of the members.
+     * @param excluded Excluded member.
+     * @param member Ranked member.
+     * @return Rank.
+     */
+    private static int rankOf(float[] fitness, int excluded, int member) {
+        int rank = 1;
+        for (int i = 0; i < fitness.length; i++) {
+            if (i != excluded && fitness[i] < fitness[member]) rank++;
+        }
+        return rank;
+    }
+}
@@ -0,0 +1,47 @@
+package metrics;
+
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the metrics collected from a simulation.
+ *
+ * @author Jakub Medek
+ */
+public class MetricsTest {
+    static volatile Object sink;
+
+    /**
+     * Threads which allocated a lot and ended between samples must not
+     * make the allocation rate negative.
+     * @throws InterruptedException If waiting for the threads is interrupted.
+     */
+    @Test
+    public void allocationRateSurvivesEndedThreads() throws InterruptedException {
+        Thread[] workers = new Thread[4];
+        CountDownLatch allocated = new CountDownLatch(workers.length);
+        CountDownLatch measured = new CountDownLatch(1);
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) sink = new byte[64*1024];
+                allocated.countDown();
+                try {
+                    measured.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            workers[i].start();
+        }
+        allocated.await();
+        Metrics metrics = new Metrics(1, 4);
+        measured.countDown();
+        for (Thread worker : workers) worker.join();
+
+        for (long tick = 1; tick <= 3; tick++) {
+            Sample sample = metrics.sample(tick, new float[]{1});
+            assertTrue(sample.allocatedBytesPerSecond >= 0 || sample.allocatedBytesPerSecond == -1);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package metrics;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the time series.
+ *
+ * @author Jakub Medek
+ */
+public class TimeSeriesTest {
+    /**
+     * Copies of the whole series taken while another thread adds values
+     * must never mix old and new values.
+     * @throws InterruptedException If waiting for the writer is interrupted.
+     */
+    @Test
+    public void copiesAreConsistentWhileWriting() throws InterruptedException {
+        TimeSeries series = new TimeSeries(16);
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= 2000000; i++) series.add(i);
+        });
+        writer.start();
+        float[] copy = new float[series.capacity()];
+        while (writer.isAlive()) {
+            int copied = series.copyLatest(copy);
+            for (int i = copy.length - copied + 1; i < copy.length; i++) {
+                assertEquals(copy[i - 1] + 1, copy[i], 0);
+            }
+        }
+        writer.join();
+        assertEquals(series.capacity(), series.copyLatest(copy));
+        assertEquals(2000000, copy[copy.length - 1], 0);
+    }
+}
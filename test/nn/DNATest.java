@@ -0,0 +1,173 @@
+package nn;
+
+import java.util.Arrays;
+import org.junit.Test;
+import util.Rng;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the DNA - crossover and mutation are compared with the simple
+ * bit by bit algorithms they replace.
+ *
+ * @author Jakub Medek
+ */
+public class DNATest {
+    static final int GENES = 1091;
+    static final int TRIALS = 4000;
+
+    /**
+     * Genes survive packing and can be read back.
+     */
+    @Test
+    public void genesArePackedWithoutLoss() {
+        byte[] genes = new byte[GENES];
+        for (int i = 0; i < GENES; i++) genes[i] = (byte)(i*37);
+        DNA dna = new DNA(genes);
+        assertArrayEquals(genes, dna.getGenes());
+        for (int i = 0; i < GENES; i++) assertEquals(genes[i], dna.getGene(i));
+    }
+
+    /**
+     * Parts taken from one parent have the same distribution of lengths
+     * as when switching parents after every bit with probability 0.01.
+     */
+    @Test
+    public void crossoverSwitchesLikeBitByBit() {
+        DNA zeros = new DNA(new byte[GENES]), ones = new DNA(filled((byte)-1));
+        Rng rng = new Rng(1), referenceRng = new Rng(2);
+        double[] switches = new double[2], firstSwitch = new double[2], startsWithThis = new double[2];
+        for (int trial = 0; trial < TRIALS; trial++) {
+            byte[] child = zeros.crossover(ones, rng).getGenes();
+            byte[] reference = bitByBitCrossover(new byte[GENES], filled((byte)-1), referenceRng);
+            measure(child, switches, firstSwitch, startsWithThis, 0);
+            measure(reference, switches, firstSwitch, startsWithThis, 1);
+        }
+        double bits = GENES*8;
+        assertEquals((bits - 1)*0.01, switches[0]/TRIALS, 1);
+        assertEquals(switches[1]/TRIALS, switches[0]/TRIALS, 1);
+        assertEquals(firstSwitch[1]/TRIALS, firstSwitch[0]/TRIALS, 8);
+        assertEquals(0.5, startsWithThis[0]/TRIALS, 0.03);
+        assertEquals(startsWithThis[1]/TRIALS, startsWithThis[0]/TRIALS, 0.05);
+    }
+
+    /**
+     * Every bit flips with the mutation rate, anywhere in the genes.
+     */
+    @Test
+    public void mutationFlipsBitsWithRate() {
+        Rng rng = new Rng(3), referenceRng = new Rng(4);
+        long[] flips = new long[2], firstHalf = new long[2];
+        for (int trial = 0; trial < TRIALS; trial++) {
+            DNA dna = new DNA(new byte[GENES]);
+            dna.mutate(0.01f, rng);
+            byte[] reference = new byte[GENES];
+            bitByBitMutation(reference, 0.01f, referenceRng);
+            count(dna.getGenes(), flips, firstHalf, 0);
+            count(reference, flips, firstHalf, 1);
+        }
+        double bits = (double)GENES*8*TRIALS;
+        assertEquals(0.01, flips[0]/bits, 0.0005);
+        assertEquals(flips[1]/bits, flips[0]/bits, 0.0005);
+        assertEquals(0.5, (double)firstHalf[0]/flips[0], 0.01);
+    }
+
+    /**
+     * Mutation with rate 1 flips every bit.
+     */
+    @Test
+    public void fullMutationFlipsEverything() {
+        DNA dna = new DNA(new byte[GENES]);
+        dna.mutate(1, new Rng(5));
+        assertArrayEquals(filled((byte)-1), dna.getGenes());
+    }
+
+    /**
+     * The old crossover - copies bit by bit and switches parents after
+     * every bit with probability 0.01.
+     * @param first First parent.
+     * @param second Second parent.
+     * @param rng Random generator.
+     * @return Child.
+     */
+    private static byte[] bitByBitCrossover(byte[] first, byte[] second, Rng rng) {
+        byte[] child = new byte[first.length];
+        boolean fromFirst = rng.nextDouble() < 0.5;
+        for (int bit = 0; bit < first.length*8; bit++) {
+            int mask = 0x80 >>> (bit & 7);
+            child[bit >>> 3] |= ((fromFirst ? first : second)[bit >>> 3] & mask);
+            if (rng.nextDouble() < 0.01) fromFirst = !fromFirst;
+        }
+        return child;
+    }
+
+    /**
+     * The old mutation - flips every bit with given probability.
+     * @param genes Genes to mutate.
+     * @param rate Mutation rate.
+     * @param rng Random generator.
+     */
+    private static void bitByBitMutation(byte[] genes, float rate, Rng rng) {
+        for (int bit = 0; bit < genes.length*8; bit++) {
+            if (rng.nextDouble() < rate) genes[bit >>> 3] ^= (byte)(0x80 >>> (bit & 7));
+        }
+    }
+
+    /**
+     * Adds statistics of a child of all-zero (this) and all-one parents.
+     * @param child Genes of the child.
+     * @param switches Sums of numbers of parent switches.
+     * @param firstSwitch Sums of positions of the first switch.
+     * @param startsWithThis Numbers of children starting with this parent.
+     * @param slot Index in the sums.
+     */
+    private static void measure(byte[] child, double[] switches, double[] firstSwitch, double[] startsWithThis, int slot) {
+        int previous = bit(child, 0), first = -1;
+        if (previous == 0) startsWithThis[slot]++;
+        for (int i = 1; i < child.length*8; i++) {
+            int current = bit(child, i);
+            if (current != previous) {
+                switches[slot]++;
+                if (first == -1) first = i;
+            }
+            previous = current;
+        }
+        firstSwitch[slot] += (first == -1) ? child.length*8 : first;
+    }
+
+    /**
+     * Adds number of set bits in total and in the first half.
+     * @param genes Genes.
+     * @param flips Sums of set bits.
+     * @param firstHalf Sums of set bits in the first half.
+     * @param slot Index in the sums.
+     */
+    private static void count(byte[] genes, long[] flips, long[] firstHalf, int slot) {
+        for (int i = 0; i < genes.length; i++) {
+            int set = Integer.bitCount(genes[i] & 0xFF);
+            flips[slot] += set;
+            if (i < genes.length/2) firstHalf[slot] += set;
+        }
+    }
+
+    /**
+     * Returns one bit of genes.
+     * @param genes Genes.
+     * @param i Index of the bit.
+     * @return The bit.
+     */
+    private static int bit(byte[] genes, int i) {
+        return (genes[i >>> 3] >>> (7 - (i & 7))) & 1;
+    }
+
+    /**
+     * Returns genes filled with one value.
+     * @param value The value.
+     * @return Genes.
+     */
+    private static byte[] filled(byte value) {
+        byte[] genes = new byte[GENES];
+        Arrays.fill(genes, value);
+        return genes;
+    }
+}
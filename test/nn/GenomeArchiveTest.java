@@ -0,0 +1,135 @@
+package nn;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the genome archive file.
+ *
+ * @author Jakub Medek
+ */
+public class GenomeArchiveTest {
+    static final int GENES = 21;
+    static final long SEGMENT_SIZE = 100;
+
+    Path file;
+
+    /**
+     * Makes a path for a new archive.
+     * @throws IOException If the temporary file can't be made.
+     */
+    @Before
+    public void makeFile() throws IOException {
+        file = Files.createTempFile("genomes", ".archive");
+        Files.delete(file);
+    }
+
+    /**
+     * Deletes the archive.
+     * @throws IOException If deleting fails.
+     */
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Records are kept after closing and the index is built again when
+     * the archive is opened, also for records in later segments.
+     * @throws IOException If the archive can't be used.
+     */
+    @Test
+    public void recordsSurviveReopening() throws IOException {
+        try (GenomeArchive archive = new GenomeArchive(file, GENES, SEGMENT_SIZE)) {
+            assertEquals(2, archive.recordsPerSegment);
+            for (int i = 0; i < 5; i++) assertEquals(i, archive.append(i/2, i*1.5f, genome(i)));
+        }
+        assertEquals(GenomeArchive.HEADER_SIZE + 5*40, Files.size(file));
+        try (GenomeArchive archive = new GenomeArchive(file, GENES, SEGMENT_SIZE)) {
+            assertEquals(5, archive.size());
+            for (int i = 0; i < 5; i++) {
+                assertEquals(i/2, archive.getGeneration(i));
+                assertEquals(i*1.5f, archive.getFitness(i), 0);
+                assertArrayEquals(genome(i).getGenes(), archive.getGenome(i).getGenes());
+            }
+            archive.append(7, 1, genome(5));
+            assertEquals(6, archive.size());
+            assertArrayEquals(genome(5).getGenes(), archive.getGenome(5).getGenes());
+        }
+    }
+
+    /**
+     * Top records are sorted from the best one, asking for more than there
+     * is returns all of them.
+     * @throws IOException If the archive can't be used.
+     */
+    @Test
+    public void topKIsSortedByFitness() throws IOException {
+        float[] values = {3, 9, 1, 7, 5};
+        try (GenomeArchive archive = new GenomeArchive(file, GENES, SEGMENT_SIZE)) {
+            for (int i = 0; i < values.length; i++) archive.append(0, values[i], genome(i));
+            assertArrayEquals(new long[]{1, 3, 4}, archive.topK(3));
+            assertArrayEquals(new long[]{1, 3, 4, 0, 2}, archive.topK(10));
+            assertArrayEquals(new long[0], archive.topK(0));
+        }
+    }
+
+    /**
+     * Generations are found by binary search, a missing one gives an
+     * empty range at the place where it would be.
+     * @throws IOException If the archive can't be used.
+     */
+    @Test
+    public void generationRangeFindsRecords() throws IOException {
+        long[] generations = {1, 1, 2, 4, 4, 4};
+        try (GenomeArchive archive = new GenomeArchive(file, GENES, SEGMENT_SIZE)) {
+            for (int i = 0; i < generations.length; i++) archive.append(generations[i], i, genome(i));
+            assertArrayEquals(new long[]{0, 2}, archive.generationRange(1));
+            assertArrayEquals(new long[]{3, 6}, archive.generationRange(4));
+            assertArrayEquals(new long[]{3, 3}, archive.generationRange(3));
+            assertArrayEquals(new long[]{0, 0}, archive.generationRange(0));
+            assertArrayEquals(new long[]{6, 6}, archive.generationRange(9));
+        }
+    }
+
+    /**
+     * Genomes of a different size are refused, both when appending and
+     * when opening an archive.
+     * @throws IOException If the archive can't be used.
+     */
+    @Test
+    public void differentGenesCountIsRefused() throws IOException {
+        try (GenomeArchive archive = new GenomeArchive(file, GENES, SEGMENT_SIZE)) {
+            try {
+                archive.append(0, 0, new DNA(new byte[GENES + 1]));
+                fail("Genome of different size was appended");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            archive.append(0, 0, genome(0));
+        }
+        try (GenomeArchive archive = new GenomeArchive(file, GENES + 1, SEGMENT_SIZE)) {
+            fail("Archive was opened with different number of genes");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Makes a genome with genes depending on a number.
+     * @param seed The number.
+     * @return Genome.
+     */
+    private static DNA genome(int seed) {
+        byte[] genes = new byte[GENES];
+        for (int i = 0; i < GENES; i++) genes[i] = (byte)(seed*31 + i);
+        return new DNA(genes);
+    }
+}
@@ -0,0 +1,78 @@
+package snakes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+import util.Rng;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of saving and loading worlds.
+ *
+ * @author Jakub Medek
+ */
+public class CheckpointTest {
+    /**
+     * A world loaded from a checkpoint has to continue exactly like the
+     * world, which was saved.
+     * @throws IOException If the checkpoint cannot be written or read.
+     */
+    @Test
+    public void resumedWorldContinuesExactly() throws IOException {
+        World original = new World(50, 30, 10, 20, 20, 400, 400, 1920, 1080, new Rng(7));
+        original.setParallelism(1);
+        for (int i = 0; i < 3000; i++) original.step();
+
+        Path file = Files.createTempFile("checkpoint", ".bin");
+        try {
+            Checkpoint.save(original, null, file);
+            World resumed = Checkpoint.load(file, null);
+            resumed.setParallelism(1);
+            for (int i = 0; i < 2000; i++) {
+                original.step();
+                resumed.step();
+            }
+            assertSameState(original, resumed);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * The buffer for a captured world has exactly the computed size.
+     */
+    @Test
+    public void capturedStateFillsItsBuffer() {
+        World world = new World(50, 30, 10, 20, 20, 400, 400, 1920, 1080, new Rng(3));
+        world.setParallelism(1);
+        for (int i = 0; i < 500; i++) world.step();
+        Checkpoint checkpoint = Checkpoint.capture(world, null);
+        assertEquals(checkpoint.state.capacity(), checkpoint.state.limit());
+    }
+
+    /**
+     * Checks that two worlds are in the same state.
+     * @param expected Expected world.
+     * @param actual Compared world.
+     */
+    private static void assertSameState(World expected, World actual) {
+        assertEquals(expected.getTick(), actual.getTick());
+        assertEquals(expected.bestSnakeId, actual.bestSnakeId);
+        assertEquals(expected.snakes.length, actual.snakes.length);
+        for (int i = 0; i < expected.snakes.length; i++) {
+            Snake snake = expected.snakes[i], other = actual.snakes[i];
+            assertArrayEquals(snake.dna.getGenes(), other.dna.getGenes());
+            assertEquals(snake.body.size, other.body.size);
+            for (int part = 0; part < snake.body.size; part++) {
+                assertEquals(snake.body.x[part], other.body.x[part], 0);
+                assertEquals(snake.body.y[part], other.body.y[part], 0);
+            }
+            assertEquals(snake.heading, other.heading, 0);
+            assertEquals(snake.health, other.health, 0);
+        }
+        assertArrayEquals(expected.food.x, actual.food.x, 0);
+        assertArrayEquals(expected.food.y, actual.food.y, 0);
+    }
+}
@@ -0,0 +1,35 @@
+package snakes;
+
+import java.util.Random;
+import org.junit.Test;
+import util.Rng;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests of the food.
+ *
+ * @author Jakub Medek
+ */
+public class FoodManagerTest {
+    /**
+     * Looking for food in the grid must give the same vision as looking
+     * at every food.
+     */
+    @Test
+    public void gridVisionMatchesLookingAtAllFood() {
+        Random random = new Random(1);
+        for (int count : new int[]{100, 3000, 20000}) {
+            World world = new World(1, count, 10, 20, 20, 400, 400, 4000, 3000, new Rng(count));
+            FoodManager food = world.food;
+            Vision vision = new Vision(), expected = new Vision();
+            for (int i = 0; i < 2000; i++) {
+                float headX = random.nextFloat()*4000, headY = random.nextFloat()*3000, heading = random.nextFloat()*6.2831855f;
+                vision.begin(headX, headY, heading, Float.POSITIVE_INFINITY);
+                food.see(vision);
+                expected.begin(headX, headY, heading, Float.POSITIVE_INFINITY);
+                for (int id = 0; id < food.size(); id++) expected.see(Vision.FOOD, food.getX(id), food.getY(id));
+                assertArrayEquals(expected.finish(), vision.finish(), 0);
+            }
+        }
+    }
+}
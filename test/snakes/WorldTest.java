@@ -0,0 +1,31 @@
+package snakes;
+
+import java.util.Arrays;
+import nn.DNA;
+import org.junit.Test;
+import util.Rng;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the world.
+ *
+ * @author Jakub Medek
+ */
+public class WorldTest {
+    /**
+     * Genomes inserted in one batch must not replace each other, even if
+     * all snakes have the same fitness.
+     */
+    @Test
+    public void insertedGenomesGetDistinctPlaces() {
+        World world = new World(10, 12, 10, 20, 20, 400, 400, 1920, 1080, new Rng(3));
+        DNA first = new DNA(world.snakes[0].dna.getGenes());
+        DNA second = new DNA(world.snakes[1].dna.getGenes());
+        world.insertGenomes(Arrays.asList(first, second));
+        int found = 0;
+        for (Snake snake : world.snakes) {
+            if (snake.dna == first || snake.dna == second) found++;
+        }
+        assertEquals(2, found);
+    }
+}
@@ -0,0 +1,100 @@
+package util;
+
+/**
+ * Fast seedable random number generator (SplitMix64). The whole state 
+ * is one long, so it can be saved and restored, and the same seed always 
+ * gives the same sequence. For work on other threads a generator can be 
+ * split into an independent one, which keeps the results reproducible 
+ * as long as the splitting happens in a fixed order.
+ * 
+ * @author Jakub Medek
+ */
+public class Rng {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    /**
+     * Constructor, which seeds the generator.
+     * @param seed Seed of the generator.
+     */
+    public Rng(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Returns next random long.
+     * @return Random long.
+     */
+    public long nextLong() {
+        return mix(state += GOLDEN_GAMMA);
+    }
+
+    /**
+     * Returns next random int from 0 (inclusive) to bound (exclusive).
+     * @param bound Upper limit, has to be positive.
+     * @return Random int.
+     */
+    public int nextInt(int bound) {
+        return (int)(((nextLong() >>> 32)*bound) >>> 32);
+    }
+
+    /**
+     * Returns next random float from 0 (inclusive) to 1 (exclusive).
+     * @return Random float.
+     */
+    public float nextFloat() {
+        return (nextLong() >>> 40)*0x1.0p-24f;
+    }
+
+    /**
+     * Returns next random double from 0 (inclusive) to 1 (exclusive).
+     * @return Random double.
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11)*0x1.0p-53;
+    }
+
+    /**
+     * Returns next random boolean.
+     * @return Random boolean.
+     */
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    /**
+     * Makes a new independent generator seeded from this one.
+     * @return New generator.
+     */
+    public Rng split() {
+        return new Rng(mix(nextLong()));
+    }
+
+    /**
+     * Returns the state of the generator, e.g. for saving it.
+     * @return State of the generator.
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Sets the state of the generator, e.g. when loading it.
+     * @param state State of the generator.
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    /**
+     * Mixes bits of a long (finalizer of SplitMix64).
+     * @param z Value to mix.
+     * @return Mixed value.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30))*0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27))*0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
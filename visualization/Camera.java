@@ -0,0 +1,160 @@
+package visualization;
+
+import processing.core.PApplet;
+
+/**
+ * Camera looking at a part of a world, which can be bigger (or smaller)
+ * than the window. It is described by the point of the world in the
+ * center of the window and by zoom - number of pixels per unit of the
+ * world. The camera can be moved by pixels of the window and zoomed
+ * around a point of the window (e.g. the mouse), and it knows which part
+ * of the world is visible, so things outside of it don't have to be drawn.
+ *
+ * @author Jakub Medek
+ */
+public class Camera {
+    static final float MIN_ZOOM = 0.01f;
+    static final float MAX_ZOOM = 20;
+
+    float centerX, centerY;
+    float zoom = 1;
+    float screenWidth, screenHeight;
+
+    /**
+     * Constructor, which makes a camera showing a whole area.
+     * @param worldWidth Width of the shown area.
+     * @param worldHeight Height of the shown area.
+     * @param screenWidth Width of the window.
+     * @param screenHeight Height of the window.
+     */
+    public Camera(float worldWidth, float worldHeight, float screenWidth, float screenHeight) {
+        fit(worldWidth, worldHeight, screenWidth, screenHeight);
+    }
+
+    /**
+     * Moves and zooms the camera so a whole area fits into the window.
+     * @param worldWidth Width of the shown area.
+     * @param worldHeight Height of the shown area.
+     * @param screenWidth Width of the window.
+     * @param screenHeight Height of the window.
+     */
+    public void fit(float worldWidth, float worldHeight, float screenWidth, float screenHeight) {
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        centerX = worldWidth/2;
+        centerY = worldHeight/2;
+        zoom = Math.min(screenWidth/worldWidth, screenHeight/worldHeight);
+    }
+
+    /**
+     * Moves the camera, so the world moves together with the mouse.
+     * @param dx Movement in pixels of the window along X axis.
+     * @param dy Movement in pixels of the window along Y axis.
+     */
+    public void pan(float dx, float dy) {
+        centerX -= dx/zoom;
+        centerY -= dy/zoom;
+    }
+
+    /**
+     * Zooms the camera, the point under a given point of the window stays
+     * in place.
+     * @param factor Zoom multiplier, above 1 to zoom in.
+     * @param screenX X coordinate of the fixed point in the window.
+     * @param screenY Y coordinate of the fixed point in the window.
+     */
+    public void zoom(float factor, float screenX, float screenY) {
+        float worldX = toWorldX(screenX), worldY = toWorldY(screenY);
+        zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom*factor));
+        centerX = worldX - (screenX - screenWidth/2)/zoom;
+        centerY = worldY - (screenY - screenHeight/2)/zoom;
+    }
+
+    /**
+     * Returns zoom of the camera.
+     * @return Pixels per unit of the world.
+     */
+    public float getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Converts X coordinate of the world to the window.
+     * @param worldX X coordinate in the world.
+     * @return X coordinate in the window.
+     */
+    public float toScreenX(float worldX) {
+        return (worldX - centerX)*zoom + screenWidth/2;
+    }
+
+    /**
+     * Converts Y coordinate of the world to the window.
+     * @param worldY Y coordinate in the world.
+     * @return Y coordinate in the window.
+     */
+    public float toScreenY(float worldY) {
+        return (worldY - centerY)*zoom + screenHeight/2;
+    }
+
+    /**
+     * Converts X coordinate of the window to the world.
+     * @param screenX X coordinate in the window.
+     * @return X coordinate in the world.
+     */
+    public float toWorldX(float screenX) {
+        return (screenX - screenWidth/2)/zoom + centerX;
+    }
+
+    /**
+     * Converts Y coordinate of the window to the world.
+     * @param screenY Y coordinate in the window.
+     * @return Y coordinate in the world.
+     */
+    public float toWorldY(float screenY) {
+        return (screenY - screenHeight/2)/zoom + centerY;
+    }
+
+    /**
+     * Returns the left edge of the visible part of the world.
+     * @return X coordinate in the world.
+     */
+    public float getLeft() {
+        return toWorldX(0);
+    }
+
+    /**
+     * Returns the top edge of the visible part of the world.
+     * @return Y coordinate in the world.
+     */
+    public float getTop() {
+        return toWorldY(0);
+    }
+
+    /**
+     * Returns the right edge of the visible part of the world.
+     * @return X coordinate in the world.
+     */
+    public float getRight() {
+        return toWorldX(screenWidth);
+    }
+
+    /**
+     * Returns the bottom edge of the visible part of the world.
+     * @return Y coordinate in the world.
+     */
+    public float getBottom() {
+        return toWorldY(screenHeight);
+    }
+
+    /**
+     * Multiplies the current matrix of an applet, so things drawn in
+     * coordinates of the world end up where the camera shows them. Has to
+     * be surrounded by pushMatrix and popMatrix.
+     * @param applet Applet to transform.
+     */
+    public void apply(PApplet applet) {
+        applet.translate(screenWidth/2, screenHeight/2);
+        applet.scale(zoom);
+        applet.translate(-centerX, -centerY);
+    }
+}
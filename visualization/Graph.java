@@ -1,18 +1,27 @@
 package visualization;
 
+import metrics.TimeSeries;
 import processing.core.PApplet;
 import static processing.core.PApplet.map;
+import static processing.core.PConstants.HSB;
 
 /**
  * Class which displays a graph, based on values which you send in
  * one by one by a function. It is designed to work as a watch of 
  * improvement of for example genetic algorithm, because it deletes 
- * the old values and replaces them with the new ones
+ * the old values and replaces them with the new ones. It can show 
+ * several series at once (e.g. one per island), each in its own color, 
+ * scaled to the same maximum.
+ * 
+ * Values are kept in ring buffers (TimeSeries), so adding a value does 
+ * not shift anything, and values can be added from another thread (one 
+ * writer per series) than the one displaying the graph.
  * 
  * @author Jakub Medek
  */
 public class Graph {
-    float[] values;
+    TimeSeries[] series;
+    float[][] displayed;
     float x, y;
     float sizeW, sizeH;
 
@@ -25,7 +34,35 @@ public class Graph {
      * @param valuesCount Number of values to be displayed at once.
      */
     public Graph(float x, float y, float sizeW, float sizeH, int valuesCount) {
-        values = new float[valuesCount];
+        this(x, y, sizeW, sizeH, valuesCount, 1);
+    }
+
+    /**
+     * Constructor of a graph with several series.
+     * @param x Up-left corner x coordinate.
+     * @param y Up-left corner y coordinate.
+     * @param sizeW Width of the graph.
+     * @param sizeH Height of the graph.
+     * @param valuesCount Number of values of one series displayed at once.
+     * @param seriesCount Number of series.
+     */
+    public Graph(float x, float y, float sizeW, float sizeH, int valuesCount, int seriesCount) {
+        this(x, y, sizeW, sizeH, valuesCount, newSeries(valuesCount, seriesCount));
+    }
+
+    /**
+     * Constructor of a graph showing already existing series, which are 
+     * filled by someone else (e.g. one per island, by the island itself).
+     * @param x Up-left corner x coordinate.
+     * @param y Up-left corner y coordinate.
+     * @param sizeW Width of the graph.
+     * @param sizeH Height of the graph.
+     * @param valuesCount Number of values of one series displayed at once.
+     * @param series Series to display.
+     */
+    public Graph(float x, float y, float sizeW, float sizeH, int valuesCount, TimeSeries... series) {
+        this.series = series;
+        displayed = new float[series.length][valuesCount];
         this.x = x;
         this.y = y;
         this.sizeH = sizeH;
@@ -33,12 +70,65 @@ public class Graph {
     }
 
     /**
-     * Shifts values of the array and than adds an item at back.
+     * Makes empty series.
+     * @param valuesCount Capacity of every series.
+     * @param seriesCount Number of series.
+     * @return Array of new series.
+     */
+    private static TimeSeries[] newSeries(int valuesCount, int seriesCount) {
+        TimeSeries[] series = new TimeSeries[seriesCount];
+        for (int i = 0; i < seriesCount; i++) series[i] = new TimeSeries(valuesCount);
+        return series;
+    }
+
+    /**
+     * Adds an item at back, the oldest one drops out.
      * @param item Value to be added.
      */
     public void addValue(float item) {
-        for (int i = 0; i < values.length - 1; i++) values[i] = values[i+1];
-        values[values.length-1] = item;
+        addValue(0, item);
+    }
+
+    /**
+     * Adds an item at back of one series, the oldest one drops out. Only 
+     * one thread can add values into one series.
+     * @param series Index of the series.
+     * @param item Value to be added.
+     */
+    public void addValue(int series, float item) {
+        this.series[series].add(item);
+    }
+
+    /**
+     * Returns number of series.
+     * @return Number of series.
+     */
+    public int getSeriesCount() {
+        return series.length;
+    }
+
+    /**
+     * Returns values of one series, e.g. for saving them.
+     * @param series Index of the series.
+     * @return Copy of the values from the oldest one.
+     */
+    public float[] getValues(int series) {
+        float[] values = new float[displayed[series].length];
+        this.series[series].copyLatest(values);
+        return values;
+    }
+
+    /**
+     * Replaces values of one series, e.g. when loading them. If there are 
+     * more values than fit, the oldest ones are dropped. Has to be called 
+     * before anyone else uses the series.
+     * @param series Index of the series.
+     * @param newValues Values from the oldest one.
+     */
+    public void setValues(int series, float[] newValues) {
+        TimeSeries loaded = new TimeSeries(this.series[series].capacity());
+        for (float value : newValues) loaded.add(value);
+        this.series[series] = loaded;
     }
 
     /**
@@ -46,14 +136,25 @@ public class Graph {
      * @param applet Applet to display the graph.
      */
     public void display(PApplet applet) {
-        applet.noFill();
-        applet.stroke(255);
         float maxValue = 0;
-        for (int i = 0; i < values.length; i++) if (values[i] > maxValue) maxValue = values[i];
-        applet.beginShape();
-            for (int i = 0; i < values.length; i++) {
-                applet.vertex(x+(float)i/values.length*sizeW, y+map(values[i], 0, (maxValue!=0)?maxValue:1, sizeH, 0));
-            }
-        applet.endShape();
-    }
-}
\ No newline at end of file
+        for (int series = 0; series < this.series.length; series++) {
+            this.series[series].copyLatest(displayed[series]);
+            for (float value : displayed[series]) if (value > maxValue) maxValue = value;
+        }
+
+        applet.pushStyle();
+        applet.noFill();
+        applet.colorMode(HSB, displayed.length, 1, 1);
+        for (int series = 0; series < displayed.length; series++) {
+            if (displayed.length == 1) applet.stroke(0, 0, 1);
+            else applet.stroke(series, 0.7f, 1);
+            float[] seriesValues = displayed[series];
+            applet.beginShape();
+                for (int i = 0; i < seriesValues.length; i++) {
+                    applet.vertex(x+(float)i/seriesValues.length*sizeW, y+map(seriesValues[i], 0, (maxValue!=0)?maxValue:1, sizeH, 0));
+                }
+            applet.endShape();
+        }
+        applet.popStyle();
+    }
+}